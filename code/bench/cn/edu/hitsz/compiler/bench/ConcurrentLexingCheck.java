@@ -0,0 +1,104 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 词法分析器可重入性的回归检查
+ * <br>
+ * 由输入的源程序生成 N 个内容各不相同的文件, 先逐个顺序地进行词法分析, 再在固定大小的线程池上并发地分析同样的文件若干轮,
+ * 要求每个文件每次得到的词法单元与符号表都和顺序分析时完全相同, 否则抛出异常.
+ * <br>
+ * 用法: {@code java cn.edu.hitsz.compiler.bench.ConcurrentLexingCheck [源程序路径] [文件数] [线程数] [轮数]}
+ */
+public final class ConcurrentLexingCheck {
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        final var sourcePath = args.length > 0 ? args[0] : FilePathConfig.SRC_CODE_PATH;
+        final var fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final var threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        final var rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        TokenKind.loadTokenKinds();
+        final var files = generateFiles(FileUtils.readFile(sourcePath), fileCount);
+
+        final var expected = new ArrayList<String>();
+        for (final var file : files) {
+            expected.add(lex(file));
+        }
+
+        final var pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                final var results = new ArrayList<Future<String>>();
+                for (final var file : files) {
+                    results.add(pool.submit(() -> lex(file)));
+                }
+                for (int i = 0; i < files.size(); i++) {
+                    if (!expected.get(i).equals(results.get(i).get())) {
+                        throw new RuntimeException("Concurrent lexing of %s differs from the sequential result in round %d"
+                            .formatted(files.get(i), round));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.printf("OK: %d files x %d rounds on %d threads match the sequential results%n",
+            fileCount, rounds, threadCount);
+    }
+
+    /**
+     * 对一个文件进行词法分析
+     *
+     * @param file 源程序路径
+     * @return 词法单元序列与符号表内容的文本表示
+     */
+    private static String lex(String file) {
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(file);
+        lexer.run();
+
+        final var result = new StringBuilder();
+        for (final var token : lexer.getTokens()) {
+            result.append(token).append(token.getSymbolId()).append('\n');
+        }
+        for (int id = 0; symbolTable.has(id); id++) {
+            result.append(symbolTable.getName(id)).append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * 生成 count 个文件: 第 i 个文件为源程序重复 i + 1 次, 且其中的标识符带有后缀 i, 使各文件的词法单元与符号表都不相同
+     */
+    private static List<String> generateFiles(String source, int count) throws IOException {
+        final var directory = Files.createTempDirectory("lexer-check");
+        directory.toFile().deleteOnExit();
+        final var files = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            final var suffix = "_" + i;
+            final var renamed = source.replaceAll("\\b(result|a|b|c)\\b", "$1" + suffix);
+            final var file = directory.resolve("input" + i + ".txt");
+            Files.writeString(file, (renamed + "\n").repeat(i + 1));
+            file.toFile().deleteOnExit();
+            files.add(file.toString());
+        }
+        return files;
+    }
+
+    private ConcurrentLexingCheck() {
+    }
+}
@@ -0,0 +1,156 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.CompressedLRTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * 比较观察者的广播与按兴趣分发 (见 {@link SyntaxAnalyzer} 中的分发表) 的开销
+ * <br>
+ * 生成一个较大的源程序, 注册六个各自只关心一条产生式的观察者, 分别以两种方式运行语法分析:
+ * 广播时各观察者声明关心所有动作, 在回调中自行过滤; 分发时各观察者通过 {@link ActionObserver#observesShift(TokenKind)}
+ * 与 {@link ActionObserver#observesReduce(Production)} 声明兴趣, 只收到关心的规约. 两种方式的计数必须相同, 否则抛出异常.
+ * <br>
+ * 用法: {@code java cn.edu.hitsz.compiler.bench.ObserverDispatchBenchmark [语句组数] [轮数]}
+ */
+public final class ObserverDispatchBenchmark {
+    public static void main(String[] args) throws IOException {
+        final var repeat = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        TokenKind.loadTokenKinds();
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(generateInput(repeat));
+        lexer.run();
+        final var tokens = lexer.getTokens();
+        final var parseTable = CompressedLRTable.compress(
+            CompiledLRTable.compile(new TableLoader().load(FilePathConfig.LR1_TABLE_PATH)));
+
+        // 前一半的轮次用于预热, 不计时
+        final var warmup = rounds / 2;
+        long broadcastNanos = 0;
+        long dispatchNanos = 0;
+        for (int round = 0; round < warmup + rounds; round++) {
+            final var broadcast = new long[1];
+            final var dispatch = new long[1];
+            final var broadcastTime = parse(symbolTable, tokens, parseTable, false, broadcast);
+            final var dispatchTime = parse(symbolTable, tokens, parseTable, true, dispatch);
+            if (broadcast[0] != dispatch[0]) {
+                throw new RuntimeException("Broadcast counted %d reductions but dispatch counted %d"
+                    .formatted(broadcast[0], dispatch[0]));
+            }
+            if (round >= warmup) {
+                broadcastNanos += broadcastTime;
+                dispatchNanos += dispatchTime;
+            }
+        }
+
+        System.out.printf("%d statements, %d observers, %d rounds%n",
+            repeat * 4 + 5, OBSERVED_PRODUCTIONS.size(), rounds);
+        System.out.printf("broadcast: %8.2f ms/round%n", broadcastNanos / 1e6 / rounds);
+        System.out.printf("dispatch:  %8.2f ms/round%n", dispatchNanos / 1e6 / rounds);
+    }
+
+    /**
+     * 注册观察者并运行一次语法分析
+     *
+     * @param dispatched 观察者是否声明兴趣
+     * @param counter    累加各观察者关心的规约次数
+     * @return 语法分析的耗时 (纳秒)
+     */
+    private static long parse(SymbolTable symbolTable, Iterable<Token> tokens, ParseTable parseTable,
+                              boolean dispatched, long[] counter) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.loadTokens(tokens);
+        parser.loadParseTable(parseTable);
+        for (final var production : OBSERVED_PRODUCTIONS) {
+            parser.registerObserver(new CountingObserver(production, dispatched, counter));
+        }
+
+        final var begin = System.nanoTime();
+        parser.run();
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * 生成源程序: 四个声明, 重复 repeat 次的一组赋值语句, 最后是返回语句
+     *
+     * @return 生成的临时文件路径
+     */
+    private static String generateInput(int repeat) throws IOException {
+        final var source = "int result;\nint a;\nint b;\nint c;\n"
+            + "a = 8;\nb = 5;\nc = 3 - a;\nresult = a * b - ( 3 + b ) * ( c - a );\n".repeat(repeat)
+            + "return result;\n";
+        final var file = Files.createTempFile("observer-benchmark", ".txt");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, source);
+        return file.toString();
+    }
+
+    /**
+     * 只关心一条产生式的观察者, 记录该产生式被规约的次数
+     */
+    private static final class CountingObserver implements ActionObserver {
+        CountingObserver(int production, boolean dispatched, long[] counter) {
+            this.production = production;
+            this.dispatched = dispatched;
+            this.counter = counter;
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            if (production.index() == this.production) {
+                counter[0]++;
+            }
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public boolean observesShift(TokenKind kind) {
+            return !dispatched;
+        }
+
+        @Override
+        public boolean observesReduce(Production production) {
+            return !dispatched || production.index() == this.production;
+        }
+
+        private final int production;
+        private final boolean dispatched;
+        private final long[] counter;
+    }
+
+    /**
+     * 各观察者关心的产生式编号: S -> id = E, S -> return E, E -> E + A, E -> E - A, A -> A * B, B -> ( E )
+     */
+    private static final List<Integer> OBSERVED_PRODUCTIONS = List.of(6, 7, 8, 9, 11, 13);
+
+    private ObserverDispatchBenchmark() {
+    }
+}
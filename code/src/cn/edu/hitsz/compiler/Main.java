@@ -1,12 +1,16 @@
 package cn.edu.hitsz.compiler;
 
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
+import cn.edu.hitsz.compiler.ir.TempAllocator;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.ParseEventLog;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
 import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.BinaryTableFile;
+import cn.edu.hitsz.compiler.parser.table.CompressedLRTable;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
 import cn.edu.hitsz.compiler.parser.table.TableLoader;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -14,51 +18,68 @@ import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import cn.edu.hitsz.compiler.utils.IREmulator;
 
+import java.io.IOException;
 import java.util.Objects;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // 构建符号表以供各部分使用
         TokenKind.loadTokenKinds();
         final var symbolTable = new SymbolTable();
 
-        // 词法分析
+        // 词法分析: 以流式读入的方式打开源程序, 由语法分析按需拉取词法单元, 扫描出的词法单元同时写入 token 列表.
+        // 源程序不会被完整读入内存
         final var lexer = new LexicalAnalyzer(symbolTable);
-        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
-        lexer.run();
-        lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
-        final var tokens = lexer.getTokens();
-        symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
-
-        // 读取第三方程序构造的 LR 分析表
-        final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
-
-        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        // final var tableGenerator = new TableGenerator();
-        // tableGenerator.run();
-        // final var lrTable = tableGenerator.getTable();
-        // lrTable.dumpTable("data/out/lrTable.csv");
+        lexer.openFile(FilePathConfig.SRC_CODE_PATH);
+        final var tokenDump = FileUtils.openWriter(FilePathConfig.TOKEN_PATH);
+        final var tokens = lexer.lazyTokens(tokenDump);
+
+        // 读取第三方程序构造的 LR 分析表. 表被预编译为二进制文件, 输入文件不变时直接加载, 不再解析 CSV
+        final var lrTable = BinaryTableFile.loadOrBuild(
+            FilePathConfig.LR1_TABLE_BINARY_PATH,
+            BinaryTableFile.checksum(FilePathConfig.LR1_TABLE_PATH),
+            () -> new TableLoader().load(FilePathConfig.LR1_TABLE_PATH));
+
+        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表, 结果缓存在磁盘上, 只在文法, 构造方法或生成器改变时重新生成
+        // final var lrTable = new TableCache(TableGenerator.Algorithm.LALR,
+        //     FilePathConfig.GENERATED_TABLE_CACHE_PATH, FilePathConfig.TABLE_GENERATION_TIMING_PATH).loadOrGenerate();
+
+        // 跳过只会规约单产生式的状态, 再将分析表压缩存储, 并输出压缩前后的大小对比
+        final var parseTable = CompressedLRTable.compress(lrTable.bypassUnitProductions());
+        parseTable.dumpStatistics(FilePathConfig.TABLE_STATISTICS_PATH);
 
         // 加载 LR 分析驱动程序
         final var parser = new SyntaxAnalyzer(symbolTable);
         parser.loadTokens(tokens);
-        parser.loadLRTable(lrTable);
+        parser.loadPositions(lexer.getPositions());
+        parser.loadParseTable(parseTable);
 
         // 加入生成规约列表的 Observer
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
         parser.registerObserver(productionCollector);
 
-        // 加入用作语义检查的 Observer
+        // 加入记录二进制事件日志的 Observer, 之后可以用 ParseEventReplay 直接重放给其它观察者
+        final var eventLog = new ParseEventLog(FilePathConfig.PARSE_EVENT_LOG_PATH);
+        parser.registerObserver(eventLog);
+
+        // 注册用作语义检查的语义动作
         final var semanticAnalyzer = new SemanticAnalyzer();
-        parser.registerObserver(semanticAnalyzer);
+        parser.registerSemanticActions(semanticAnalyzer);
+
+        // 注册用作 IR 生成的语义动作, 与语义检查共用同一个属性栈
+        final var temps = new TempAllocator();
+        final var irGenerator = new IRGenerator(temps);
+        parser.registerSemanticActions(irGenerator);
 
-        // 加入用作 IR 生成的 Observer
-        final var irGenerator = new IRGenerator();
-        parser.registerObserver(irGenerator);
+        // 执行语法解析并在解析过程中依次调用各 Observer. 分析出错时日志不会收到接受事件, 需要在这里关闭
+        try (tokenDump) {
+            parser.run();
+        } finally {
+            eventLog.close();
+        }
 
-        // 执行语法解析并在解析过程中依次调用各 Observer
-        parser.run();
+        // 词法分析与语义分析交替进行, 词法分析阶段的符号表只能在分析结束后按未确定类型的形式输出
+        symbolTable.dumpNames(FilePathConfig.OLD_SYMBOL_TABLE);
 
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
@@ -71,7 +92,7 @@ public class Main {
         FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, emulator.execute().map(Objects::toString).orElse("No return value"));
 
         // 由 IR 生成汇编
-        final var asmGenerator = new AssemblyGenerator();
+        final var asmGenerator = new AssemblyGenerator(temps);
         asmGenerator.loadIR(instructions);
         asmGenerator.run();
         asmGenerator.dump(FilePathConfig.ASSEMBLY_LANGUAGE_PATH);
@@ -22,6 +22,12 @@ import static cn.edu.hitsz.compiler.utils.FileUtils.writeLines;
  * @see AssemblyGenerator#run() 代码生成与寄存器分配
  */
 public class AssemblyGenerator {
+    /**
+     * @param temps 本次编译的临时变量分配器, 应当与生成 IR 时使用的是同一个, 以免临时变量重名
+     */
+    public AssemblyGenerator(TempAllocator temps) {
+        this.temps = temps;
+    }
 
     /**
      * 加载前端提供的中间代码
@@ -53,7 +59,7 @@ public class AssemblyGenerator {
                     instructions.add(newInstruction);
                 } else if (lhs.isImmediate() && rhs.isIRVariable() && (instruction.getKind() == InstructionKind.MUL || instruction.getKind() == InstructionKind.SUB)) {
                     var immediate = (IRImmediate) lhs;
-                    var tempResult = IRVariable.temp();
+                    var tempResult = temps.next();
                     Instruction instruction1 = Instruction.createMov(tempResult, immediate);
                     instructions.add(instruction1);
                     Instruction instruction2;
@@ -66,7 +72,7 @@ public class AssemblyGenerator {
                     instructions.add(instruction2);
                 } else if (lhs.isIRVariable() && rhs.isImmediate() && (instruction.getKind() == InstructionKind.MUL)) {
                     var immediate = (IRImmediate) rhs;
-                    var tempResult = IRVariable.temp();
+                    var tempResult = temps.next();
                     Instruction instruction1 = Instruction.createMov(tempResult, immediate);
                     instructions.add(instruction1);
                     Instruction instruction2 = Instruction.createMul(result, lhs, tempResult);
@@ -80,8 +86,12 @@ public class AssemblyGenerator {
         }
 
         for (Instruction instruction : instructions) {
-            // 加载并保存全部中间指令的 IRVariable
-            variablesInUse.addAll(getIRVariablesFromInstruction(instruction));
+            // 统计全部中间指令中每个 IRVariable 出现的次数
+            for (IRVariable variable : getIRVariablesFromInstruction(instruction)) {
+                final var key = keyOf(variable);
+                ensureCapacity(key);
+                remainingUses[key] += 1;
+            }
         }
 
     }
@@ -216,22 +226,24 @@ public class AssemblyGenerator {
         var result = currentInstruction.getResult();
 
         // 若当前变量已经在之前被分配寄存器, 直接返回
-        if (registerAllocTable.containsValue(result)) {
-            return getRegisterWithIRVariable(result);
+        final var key = keyOf(result);
+        if (variableRegisters[key] != null) {
+            return variableRegisters[key];
         }
 
-        // 其它指令不能分配寄存器 a0 , 也不能分配 registerAllocTable 中已有的寄存器
+        // 其它指令不能分配寄存器 a0 , 也不能分配 registerContents 中已有的寄存器
         for (var registerName : Register.values()) {
-            if (!registerAllocTable.containsKey(registerName) && (registerName != Register.a0)) {
-                registerAllocTable.put(registerName, result);
+            if (registerContents[registerName.ordinal()] == null && (registerName != Register.a0)) {
+                assignRegister(registerName, result);
                 return registerName;
             }
         }
 
         // 若当前已无空闲的寄存器, 检测是否有不再被使用的变量(若有则分配存放该变量的寄存器）
-        for (var registerName : registerAllocTable.keySet()) {
-            if (!variablesInUse.contains(registerAllocTable.get(registerName))) {
-                registerAllocTable.put(registerName, result);
+        for (var registerName : Register.values()) {
+            final var occupant = registerContents[registerName.ordinal()];
+            if (occupant != null && remainingUses[keyOf(occupant)] == 0) {
+                assignRegister(registerName, result);
                 return registerName;
             }
         }
@@ -241,16 +253,45 @@ public class AssemblyGenerator {
     }
 
     /**
-     * 用于根据 IRVariable 从 registerAllocTable 查找出分配的寄存器
+     * 将寄存器分配给变量, 寄存器中原有的变量不再占有该寄存器
+     */
+    private void assignRegister(Register register, IRVariable variable) {
+        final var occupant = registerContents[register.ordinal()];
+        if (occupant != null) {
+            variableRegisters[keyOf(occupant)] = null;
+        }
+        registerContents[register.ordinal()] = variable;
+        variableRegisters[keyOf(variable)] = register;
+    }
+
+    /**
+     * 用于根据 IRVariable 查找出分配的寄存器
      */
     private Register getRegisterWithIRVariable(IRVariable irVariable) {
-        for (var key : registerAllocTable.keySet()) {
-            if (Objects.equals(registerAllocTable.get(key).getName(), irVariable.getName())) {
-                return key;
-            }
+        final var register = variableRegisters[keyOf(irVariable)];
+        if (register == null) {
+            // 若没找到, 说明当前变量还没有被分配寄存器, 报错
+            throw new RuntimeException("The variable hasn't been allocated register yet!");
+        }
+        return register;
+    }
+
+    /**
+     * 变量在按变量索引的数组中的下标: 具体变量与临时变量的编号各自稠密, 分别放在偶数与奇数位置上
+     */
+    private static int keyOf(IRVariable variable) {
+        return variable.isTemp() ? variable.getIndex() * 2 + 1 : variable.getIndex() * 2;
+    }
+
+    /**
+     * 保证按变量索引的数组能容纳下标 key
+     */
+    private void ensureCapacity(int key) {
+        if (key >= remainingUses.length) {
+            final var capacity = Math.max(key + 1, remainingUses.length * 2);
+            remainingUses = Arrays.copyOf(remainingUses, capacity);
+            variableRegisters = Arrays.copyOf(variableRegisters, capacity);
         }
-        // 若没找到, 说明当前变量还没有被分配寄存器, 报错
-        throw new RuntimeException("The variable hasn't been allocated register yet!");
     }
 
     /**
@@ -284,18 +325,21 @@ public class AssemblyGenerator {
     }
 
     /**
-     * 从 variablesInUse 中去除掉当前指令包含的 IRVariable
+     * 从 remainingUses 中减去当前指令包含的 IRVariable 的出现次数
      *
      * @param instruction 当前中间代码指令
      */
     private void removeVariablesInUse(Instruction instruction) {
-        int num = getIRVariablesFromInstruction(instruction).size();
-        while (num > 0) {
-            variablesInUse.remove(0);
-            num--;
+        for (IRVariable variable : getIRVariablesFromInstruction(instruction)) {
+            remainingUses[keyOf(variable)] -= 1;
         }
     }
 
+    /**
+     * 临时变量分配器
+     */
+    private final TempAllocator temps;
+
     /**
      * 生成的汇编指令列表
      */
@@ -307,14 +351,19 @@ public class AssemblyGenerator {
     private final List<Instruction> instructions = new ArrayList<>();
 
     /**
-     * 寄存器分配表
+     * 寄存器分配表: 以寄存器的序号索引, 存放寄存器中的变量; 按寄存器的声明顺序遍历, 从而寄存器分配的结果是确定的
+     */
+    private final IRVariable[] registerContents = new IRVariable[Register.values().length];
+
+    /**
+     * 以变量的下标 (见 {@link #keyOf(IRVariable)}) 索引, 存放变量所在的寄存器
      */
-    private final Map<Register, IRVariable> registerAllocTable = new HashMap<>();
+    private Register[] variableRegisters = new Register[0];
 
     /**
-     * 保存仍要被使用的 IRVariable , 便于寄存器分配时进行判断
+     * 以变量的下标索引, 存放变量在当前指令及之后的指令中还会出现的次数, 便于寄存器分配时进行判断
      */
-    private final List<IRVariable> variablesInUse = new ArrayList<>();
+    private int[] remainingUses = new int[0];
 }
 
 /**
@@ -7,27 +7,41 @@ package cn.edu.hitsz.compiler.ir;
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
  * IR 变量的等价性由 name 唯一确定.
+ * <br>
+ * 此外每个变量还带有一个整数编号 index: 具体变量的编号为其在符号表中的标识符编号, 临时变量的编号即 "$" 之后的数字.
+ * 同一种类的变量之间编号互不相同, 后端可以用它作为数组下标来代替以变量为键的哈希表.
  */
 public class IRVariable implements IRValue {
     /**
-     * @param name 源语言中变量的名字
+     * @param symbolId 变量在符号表中的标识符编号
+     * @param name     源语言中变量的名字
      * @return 一个对应于源语言中具体变量的 IRVariable
      */
-    public static IRVariable named(String name) {
-        return new IRVariable(name);
+    public static IRVariable named(int symbolId, String name) {
+        return new IRVariable(name, symbolId);
     }
 
     /**
-     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     * 临时变量应当通过 {@link TempAllocator#next()} 获得
+     *
+     * @param index 临时变量的编号
+     * @return 一个对应于源语言中的临时变量的 IRVariable
      */
-    public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+    static IRVariable temp(int index) {
+        return new IRVariable("$" + index, index);
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return 具体变量的标识符编号或临时变量的编号
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public boolean isTemp() {
         return name.startsWith("$");
     }
@@ -51,10 +65,11 @@ public class IRVariable implements IRValue {
         return name.hashCode();
     }
 
-    private IRVariable(String name) {
+    private IRVariable(String name, int index) {
         this.name = name;
+        this.index = index;
     }
 
     private final String name;
-    private static int count = 0;
+    private final int index;
 }
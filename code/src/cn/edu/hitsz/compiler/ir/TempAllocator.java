@@ -0,0 +1,29 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 临时变量分配器
+ * <br>
+ * 每次编译持有一个自己的分配器, 临时变量的编号只取决于本次编译中的分配顺序, 与同一 JVM 中此前或同时进行的其它编译无关,
+ * 因此输出结果是确定的. 计数器是无锁的, 同一次编译中并行执行的多个阶段可以安全地共享同一个分配器.
+ * <br>
+ * 同一次编译中所有会生成临时变量的阶段 (比如 IRGenerator 与 AssemblyGenerator) 应当共享同一个分配器, 以免临时变量重名.
+ */
+public class TempAllocator {
+    /**
+     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     */
+    public IRVariable next() {
+        return IRVariable.temp(counter.getAndIncrement());
+    }
+
+    /**
+     * @return 已经分配出的临时变量的数量
+     */
+    public int allocated() {
+        return counter.get();
+    }
+
+    private final AtomicInteger counter = new AtomicInteger();
+}
@@ -0,0 +1,42 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 将按字节存储的 ASCII 文本 (比如内存映射的源程序文件) 直接视为字符序列, 不做任何解码与复制
+ * <br>
+ * 每个字节对应一个字符, 非 ASCII 的字节会被视为 {@code 0x80-0xFF} 的字符, 词法分析时会被当作无法识别的字符跳过.
+ */
+public class AsciiSequence implements CharSequence {
+    /**
+     * @param bytes 文本内容, 从其 position 到 limit 的部分为文本
+     */
+    public AsciiSequence(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiSequence(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        final var content = new byte[bytes.limit()];
+        bytes.get(0, content);
+        return new String(content, StandardCharsets.ISO_8859_1);
+    }
+
+    private final ByteBuffer bytes;
+}
@@ -0,0 +1,208 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑存储的词法单元序列
+ * <br>
+ * 每个词法单元只占用四个并列 int 数组中的一格: 类型的码点 ({@link TokenKind#getCode()}), 在源程序中的起始偏移量与长度,
+ * 以及标识符在符号表中的编号 (不是标识符时为 {@link Token#NO_SYMBOL}).
+ * 扫描过程中不会为词法单元构造任何对象, 其文本只有在被 {@link #getText(int)} 或 {@link #getToken(int)} 请求时才从源程序中截取.
+ * 遍历时, 没有文本的词法单元 (关键字, 标点, EOF) 使用 {@link LexerDFA#getSimpleToken(int)} 按码点取得的共享实例,
+ * 标识符的文本直接取自符号表, 不再从源程序中截取.
+ */
+public class CompactTokens implements Iterable<Token> {
+    CompactTokens(CharSequence source, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+        this.dfa = LexerDFA.getInstance();
+    }
+
+    /**
+     * @return 词法单元的数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元类型的码点
+     */
+    public int getKindCode(int index) {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元的类型
+     */
+    public TokenKind getKind(int index) {
+        return TokenKind.fromCode(getKindCode(index));
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元在源程序中的起始偏移量
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元在源程序中的长度
+     */
+    public int getLength(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 标识符在符号表中的编号, 对于不是标识符的词法单元返回 {@link Token#NO_SYMBOL}
+     */
+    public int getSymbolId(int index) {
+        checkIndex(index);
+        return symbolIds[index];
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元的文本, 对于关键字/标点等不带文本的词法单元返回空字符串
+     */
+    public String getText(int index) {
+        if (!dfa.hasTextByCode(getKindCode(index))) {
+            return "";
+        }
+        if (symbolIds[index] != Token.NO_SYMBOL) {
+            return symbolTable.getName(symbolIds[index]);
+        }
+        return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    /**
+     * @param index 词法单元的序号
+     * @return 该词法单元对应的 Token 对象
+     */
+    public Token getToken(int index) {
+        final var code = getKindCode(index);
+        if (!dfa.hasTextByCode(code)) {
+            return dfa.getSimpleToken(code);
+        }
+        final var kind = TokenKind.fromCode(code);
+        if (symbolIds[index] != Token.NO_SYMBOL) {
+            return Token.identifier(kind, symbolTable.getName(symbolIds[index]), symbolIds[index]);
+        }
+        return Token.normal(kind, getText(index));
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Token next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getToken(next++);
+            }
+
+            private int next = 0;
+        };
+    }
+
+    /**
+     * 在末尾追加一个词法单元
+     */
+    void add(int kindCode, int start, int length, int symbolId) {
+        if (size == kinds.length) {
+            final var capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+        }
+
+        kinds[size] = kindCode;
+        starts[size] = start;
+        lengths[size] = length;
+        symbolIds[size] = symbolId;
+        size += 1;
+    }
+
+    /**
+     * 按顺序拼接多段词法单元序列, 每段末尾的 EOF 被丢弃, 只在整个序列末尾保留最后一段的 EOF
+     *
+     * @param source      源程序
+     * @param symbolTable 拼接后的序列使用的符号表
+     * @param parts       各段词法单元, 偏移量均相对于整个源程序
+     * @param symbolMaps  各段的标识符编号到 symbolTable 中编号的映射 (见 {@link SymbolTable#mergeFrom(SymbolTable)})
+     * @return 拼接后的序列
+     */
+    static CompactTokens concat(CharSequence source, SymbolTable symbolTable,
+                                List<CompactTokens> parts, List<int[]> symbolMaps) {
+        final var result = new CompactTokens(source, symbolTable);
+        final var total = parts.stream().mapToInt(part -> part.size - 1).sum() + 1;
+        result.kinds = new int[total];
+        result.starts = new int[total];
+        result.lengths = new int[total];
+        result.symbolIds = new int[total];
+
+        for (int i = 0; i < parts.size(); i++) {
+            final var part = parts.get(i);
+            final var symbolMap = symbolMaps.get(i);
+            final var count = i == parts.size() - 1 ? part.size : part.size - 1;
+            System.arraycopy(part.kinds, 0, result.kinds, result.size, count);
+            System.arraycopy(part.starts, 0, result.starts, result.size, count);
+            System.arraycopy(part.lengths, 0, result.lengths, result.size, count);
+            for (int j = 0; j < count; j++) {
+                final var symbolId = part.symbolIds[j];
+                result.symbolIds[result.size + j] = symbolId == Token.NO_SYMBOL ? Token.NO_SYMBOL : symbolMap[symbolId];
+            }
+            result.size += count;
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * 源程序
+     */
+    private final CharSequence source;
+
+    /**
+     * 标识符编号所属的符号表
+     */
+    private final SymbolTable symbolTable;
+
+    /**
+     * 词法自动机, 用于按码点判断词法单元是否带有文本
+     */
+    private final LexerDFA dfa;
+
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] symbolIds = new int[INITIAL_CAPACITY];
+    private int size = 0;
+}
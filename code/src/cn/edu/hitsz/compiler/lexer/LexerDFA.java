@@ -0,0 +1,495 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * 由码点文件生成的表驱动词法分析自动机
+ * <br>
+ * 词法单元的定义分为两类:
+ * <ul>
+ *     <li>字面量: 码点文件中除 id 与 IntConst 外的所有词法单元, 其标识符即为其拼写 (Semicolon 除外, 其拼写为 ;).
+ *     关键字与标点都属于字面量, 因此在码点文件中新增关键字不需要修改代码</li>
+ *     <li>规则: 形如 {@code first rest*} 的简单正则规则, 包括标识符 id, 整数常量 IntConst 以及需要跳过的空白字符</li>
+ * </ul>
+ * 构造时先将所有字面量组成一棵字典树, 与各条规则的自动机做乘积构造得到 DFA (同一状态同时接受多个词法单元时字面量优先),
+ * 随后按接受的词法单元做初始划分, 不断细分直到稳定, 得到最小化的 DFA. 最后将在所有状态上转移都相同的字符合并为同一个字符类.
+ * <br>
+ * 最终的自动机以扁平的 int 数组存储: {@code transitions[state * classCount + charClass]} 为转移到的状态,
+ * {@code accepts[state]} 为该状态接受的词法单元在 {@link #getAcceptKind(int)} 中的编号. 0 号状态为死状态, 1 号状态为初始状态.
+ */
+public final class LexerDFA {
+    /**
+     * 死状态, 任何字符都无法再使其转移到其它状态
+     */
+    public static final int DEAD = 0;
+
+    /**
+     * 初始状态
+     */
+    public static final int START = 1;
+
+    /**
+     * 该状态不接受任何词法单元
+     */
+    public static final int NO_ACCEPT = -1;
+
+    /**
+     * 该状态接受空白字符, 扫描到之后直接跳过即可
+     */
+    public static final int SKIP = 0;
+
+    /**
+     * 获得由当前码点文件构造的自动机, 须在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @return 自动机
+     */
+    public static synchronized LexerDFA getInstance() {
+        if (instance == null) {
+            instance = build(TokenKind.allAllowedTokenKinds().values());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param state 当前状态
+     * @param ch    读入的字符
+     * @return 转移到的状态
+     */
+    public int next(int state, int ch) {
+        final var charClass = ch < ASCII_SIZE ? charClasses[ch] : otherClass;
+        return transitions[state * classCount + charClass];
+    }
+
+    /**
+     * @param state 状态
+     * @return 该状态接受的词法单元编号, 可能为 {@link #NO_ACCEPT} 或 {@link #SKIP}
+     */
+    public int getAccept(int state) {
+        return accepts[state];
+    }
+
+    /**
+     * @param accept 由 {@link #getAccept(int)} 获得的词法单元编号
+     * @return 对应的词法单元类型
+     */
+    public TokenKind getAcceptKind(int accept) {
+        return acceptKinds[accept];
+    }
+
+    /**
+     * @param accept 由 {@link #getAccept(int)} 获得的词法单元编号
+     * @return 该词法单元是否由规则生成 (从而需要保留其文本, 比如标识符和整数常量)
+     */
+    public boolean hasText(int accept) {
+        return acceptHasText[accept];
+    }
+
+    /**
+     * @param kind 词法单元类型
+     * @return 该类型的词法单元是否由规则生成 (从而带有文本)
+     */
+    public boolean hasText(TokenKind kind) {
+        return hasTextByCode(kind.getCode());
+    }
+
+    /**
+     * @param code 词法单元类型的码点
+     * @return 该类型的词法单元是否由规则生成 (从而带有文本)
+     */
+    public boolean hasTextByCode(int code) {
+        return code + 1 < codeHasText.length && codeHasText[code + 1];
+    }
+
+    /**
+     * @param code 不带文本的词法单元类型的码点
+     * @return 该类型共享的简单 token, 与 {@link Token#simple(TokenKind)} 相同但不需要查表
+     */
+    public Token getSimpleToken(int code) {
+        if (code + 1 >= simpleTokens.length || simpleTokens[code + 1] == null) {
+            return Token.simple(TokenKind.fromCode(code));
+        }
+        return simpleTokens[code + 1];
+    }
+
+    /**
+     * @param state 状态
+     * @return 该状态是否接受空白, 且从它出发能到达的接受状态也都只接受空白. 此时无论之后如何匹配, 已经读入的字符都会被跳过,
+     * 不必再为可能的回退而保留
+     */
+    public boolean isSkipOnly(int state) {
+        return skipOnly[state];
+    }
+
+    /**
+     * 判断字符 {@code ch} 之后是否一定是新词法单元的开始: 即 {@code ch} 本身就是一个完整的词法单元, 且其后跟任何字符都不能继续匹配.
+     * 在这样的字符之后切分源程序, 分别进行词法分析的结果与整体分析的结果相同.
+     *
+     * @param ch 字符
+     * @return 是否可以在该字符之后切分源程序
+     */
+    public boolean isSafeBoundary(char ch) {
+        final var state = next(START, ch);
+        if (state == DEAD || accepts[state] == NO_ACCEPT) {
+            return false;
+        }
+
+        for (int charClass = 0; charClass < classCount; charClass++) {
+            if (transitions[state * classCount + charClass] != DEAD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 最小化后的状态数 (包括死状态)
+     */
+    public int getStateCount() {
+        return accepts.length;
+    }
+
+    /**
+     * @return 字符类的数量
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    //==================== 以下为构造自动机的代码 ==============================//
+
+    private static final int ASCII_SIZE = 128;
+
+    /**
+     * 所有非 ASCII 字符都归为这一个输入符号
+     */
+    private static final int OTHER_SYMBOL = ASCII_SIZE;
+    private static final int SYMBOL_COUNT = ASCII_SIZE + 1;
+
+    /**
+     * 字面量的别名, 即标识符与拼写不同的字面量
+     */
+    private static final Map<String, String> LITERAL_SPELLINGS = Map.of("Semicolon", ";");
+
+    /**
+     * 形如 {@code first rest*} 的规则
+     *
+     * @param kindId 规则对应的词法单元标识符, 为 null 时代表需要跳过的字符
+     * @param first  规则的第一个字符
+     * @param rest   规则后续的字符
+     */
+    private record Rule(String kindId, IntPredicate first, IntPredicate rest) {
+    }
+
+    private static final IntPredicate BLANK = ch -> ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n';
+    private static final IntPredicate DIGIT = ch -> ch >= '0' && ch <= '9';
+    private static final IntPredicate ALPHABET_OR_UNDERLINE = ch -> (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_';
+    private static final IntPredicate ALPHABET_OR_UNDERLINE_OR_DIGIT = ALPHABET_OR_UNDERLINE.or(DIGIT);
+
+    /**
+     * 按优先级排列的规则
+     */
+    private static final List<Rule> RULES = List.of(
+        new Rule("id", ALPHABET_OR_UNDERLINE, ALPHABET_OR_UNDERLINE_OR_DIGIT),
+        new Rule("IntConst", DIGIT, DIGIT),
+        new Rule(null, BLANK, BLANK)
+    );
+
+    /**
+     * 规则自动机的状态: 0 为初始, 1 为已读入至少一个字符 (接受), -1 为死状态
+     */
+    private static int stepRule(Rule rule, int state, int symbol) {
+        return switch (state) {
+            case 0 -> rule.first().test(symbol) ? 1 : -1;
+            case 1 -> rule.rest().test(symbol) ? 1 : -1;
+            default -> -1;
+        };
+    }
+
+    private static LexerDFA build(Collection<TokenKind> tokenKinds) {
+        // 编号 0 保留给 SKIP
+        final var acceptKinds = new ArrayList<TokenKind>();
+        final var acceptHasText = new ArrayList<Boolean>();
+        acceptKinds.add(null);
+        acceptHasText.add(false);
+
+        final var ruleIds = new HashSet<String>();
+        final var ruleAccepts = new int[RULES.size()];
+        for (int i = 0; i < RULES.size(); i++) {
+            final var kindId = RULES.get(i).kindId();
+            if (kindId == null) {
+                ruleAccepts[i] = SKIP;
+            } else {
+                ruleIds.add(kindId);
+                ruleAccepts[i] = acceptKinds.size();
+                acceptKinds.add(TokenKind.fromString(kindId));
+                acceptHasText.add(true);
+            }
+        }
+
+        // 所有字面量组成的字典树, 0 号节点为根
+        final var trie = new ArrayList<int[]>();
+        final var trieAccepts = new ArrayList<Integer>();
+        trie.add(newRow());
+        trieAccepts.add(NO_ACCEPT);
+
+        final var literals = tokenKinds.stream()
+            .filter(kind -> !kind.equals(TokenKind.eof()) && !ruleIds.contains(kind.getIdentifier()))
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+        for (final var kind : literals) {
+            final var spelling = LITERAL_SPELLINGS.getOrDefault(kind.getIdentifier(), kind.getIdentifier());
+            var node = 0;
+            for (int i = 0; i < spelling.length(); i++) {
+                final var symbol = toSymbol(spelling.charAt(i));
+                if (trie.get(node)[symbol] < 0) {
+                    trie.get(node)[symbol] = trie.size();
+                    trie.add(newRow());
+                    trieAccepts.add(NO_ACCEPT);
+                }
+                node = trie.get(node)[symbol];
+            }
+            trieAccepts.set(node, acceptKinds.size());
+            acceptKinds.add(kind);
+            acceptHasText.add(false);
+        }
+
+        // 乘积构造: DFA 的状态为 (字典树节点, 各规则自动机状态) 组成的元组, 全为 -1 的元组即为死状态
+        final var componentCount = 1 + RULES.size();
+        final var dead = new int[componentCount];
+        Arrays.fill(dead, -1);
+        final var start = new int[componentCount];
+
+        final var tuples = new ArrayList<int[]>();
+        final var tupleIndex = new HashMap<List<Integer>, Integer>();
+        final var rawTransitions = new ArrayList<int[]>();
+        for (final var tuple : List.of(dead, start)) {
+            tupleIndex.put(asKey(tuple), tuples.size());
+            tuples.add(tuple);
+        }
+
+        for (int state = 0; state < tuples.size(); state++) {
+            final var tuple = tuples.get(state);
+            final var row = new int[SYMBOL_COUNT];
+            for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+                final var next = new int[componentCount];
+                next[0] = tuple[0] < 0 ? -1 : trie.get(tuple[0])[symbol];
+                for (int i = 0; i < RULES.size(); i++) {
+                    next[i + 1] = stepRule(RULES.get(i), tuple[i + 1], symbol);
+                }
+
+                final var key = asKey(next);
+                var to = tupleIndex.get(key);
+                if (to == null) {
+                    to = tuples.size();
+                    tupleIndex.put(key, to);
+                    tuples.add(next);
+                }
+                row[symbol] = to;
+            }
+            rawTransitions.add(row);
+        }
+
+        // 各 DFA 状态接受的词法单元, 字面量优先于规则, 规则按顺序决定优先级
+        final var rawAccepts = new int[tuples.size()];
+        for (int state = 0; state < tuples.size(); state++) {
+            final var tuple = tuples.get(state);
+            var accept = tuple[0] < 0 ? NO_ACCEPT : trieAccepts.get(tuple[0]);
+            for (int i = 0; i < RULES.size() && accept == NO_ACCEPT; i++) {
+                if (tuple[i + 1] == 1) {
+                    accept = ruleAccepts[i];
+                }
+            }
+            rawAccepts[state] = accept;
+        }
+
+        return minimize(rawTransitions, rawAccepts, acceptKinds, acceptHasText);
+    }
+
+    /**
+     * 划分细化法最小化 DFA, 并计算字符类
+     */
+    private static LexerDFA minimize(List<int[]> rawTransitions, int[] rawAccepts,
+                                     List<TokenKind> acceptKinds, List<Boolean> acceptHasText) {
+        final var stateCount = rawAccepts.length;
+
+        // 初始划分: 按接受的词法单元划分, 死状态单独成块, 且保证死状态与初始状态分别为 0 号与 1 号块
+        var block = new int[stateCount];
+        var blockCount = 0;
+        {
+            final var initial = new HashMap<Integer, Integer>();
+            for (int state = 0; state < stateCount; state++) {
+                final var key = state == 0 ? Integer.MIN_VALUE : rawAccepts[state];
+                final var count = initial.size();
+                block[state] = initial.computeIfAbsent(key, k -> count);
+            }
+            blockCount = initial.size();
+        }
+
+        // 不断按 (所在块, 各输入符号转移到的块) 细分, 直到块数不再变化
+        while (true) {
+            final var signatures = new HashMap<List<Integer>, Integer>();
+            final var refined = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                final var signature = new ArrayList<Integer>(SYMBOL_COUNT + 1);
+                signature.add(block[state]);
+                for (final var to : rawTransitions.get(state)) {
+                    signature.add(block[to]);
+                }
+                final var count = signatures.size();
+                refined[state] = signatures.computeIfAbsent(signature, k -> count);
+            }
+
+            final var refinedCount = signatures.size();
+            block = refined;
+            if (refinedCount == blockCount) {
+                break;
+            }
+            blockCount = refinedCount;
+        }
+
+        // 重新编号, 使得死状态为 0, 初始状态为 1, 其余按首次出现的顺序编号
+        final var renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        renumber[block[0]] = DEAD;
+        renumber[block[1]] = START;
+        var nextNumber = 2;
+        for (int state = 0; state < stateCount; state++) {
+            if (renumber[block[state]] < 0) {
+                renumber[block[state]] = nextNumber++;
+            }
+        }
+
+        final var minTransitions = new int[blockCount][SYMBOL_COUNT];
+        final var accepts = new int[blockCount];
+        for (int state = 0; state < stateCount; state++) {
+            final var to = renumber[block[state]];
+            accepts[to] = rawAccepts[state];
+            for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+                minTransitions[to][symbol] = renumber[block[rawTransitions.get(state)[symbol]]];
+            }
+        }
+
+        // 在所有状态上转移都相同的输入符号属于同一个字符类
+        final var symbolClasses = new int[SYMBOL_COUNT];
+        final var columns = new HashMap<List<Integer>, Integer>();
+        for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+            final var column = new ArrayList<Integer>(blockCount);
+            for (int state = 0; state < blockCount; state++) {
+                column.add(minTransitions[state][symbol]);
+            }
+            final var count = columns.size();
+            symbolClasses[symbol] = columns.computeIfAbsent(column, k -> count);
+        }
+
+        final var classCount = columns.size();
+        final var transitions = new int[blockCount * classCount];
+        for (int state = 0; state < blockCount; state++) {
+            for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+                transitions[state * classCount + symbolClasses[symbol]] = minTransitions[state][symbol];
+            }
+        }
+
+        final var hasText = new boolean[acceptHasText.size()];
+        for (int i = 0; i < hasText.length; i++) {
+            hasText[i] = acceptHasText.get(i);
+        }
+
+        return new LexerDFA(
+            Arrays.copyOf(symbolClasses, ASCII_SIZE), symbolClasses[OTHER_SYMBOL], classCount,
+            transitions, accepts, acceptKinds.toArray(new TokenKind[0]), hasText);
+    }
+
+    private static int toSymbol(char ch) {
+        return ch < ASCII_SIZE ? ch : OTHER_SYMBOL;
+    }
+
+    private static int[] newRow() {
+        final var row = new int[SYMBOL_COUNT];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static List<Integer> asKey(int[] tuple) {
+        return Arrays.stream(tuple).boxed().toList();
+    }
+
+    private LexerDFA(int[] charClasses, int otherClass, int classCount, int[] transitions, int[] accepts,
+                     TokenKind[] acceptKinds, boolean[] acceptHasText) {
+        this.charClasses = charClasses;
+        this.otherClass = otherClass;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.accepts = accepts;
+        this.acceptKinds = acceptKinds;
+        this.acceptHasText = acceptHasText;
+
+        // 能到达接受非空白的状态的状态不断向前传播, 直到不再变化
+        final var stateCount = accepts.length;
+        final var reachesToken = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            reachesToken[state] = accepts[state] != NO_ACCEPT && accepts[state] != SKIP;
+        }
+        for (var changed = true; changed; ) {
+            changed = false;
+            for (int state = 0; state < stateCount; state++) {
+                for (int charClass = 0; charClass < classCount && !reachesToken[state]; charClass++) {
+                    if (reachesToken[transitions[state * classCount + charClass]]) {
+                        reachesToken[state] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        this.skipOnly = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            skipOnly[state] = accepts[state] == SKIP && !reachesToken[state];
+        }
+
+        // 以码点 + 1 索引的表, 使每个词法单元只需一次数组访问即可判断是否带有文本, 或取得共享的简单 token
+        final var kinds = new ArrayList<>(TokenKind.allAllowedTokenKinds().values());
+        kinds.add(TokenKind.eof());
+        final var codeBound = kinds.stream().mapToInt(TokenKind::getCode).max().orElse(-1) + 2;
+        this.codeHasText = new boolean[codeBound];
+        this.simpleTokens = new Token[codeBound];
+        for (int accept = 1; accept < acceptKinds.length; accept++) {
+            if (acceptHasText[accept]) {
+                codeHasText[acceptKinds[accept].getCode() + 1] = true;
+            }
+        }
+        for (final var kind : kinds) {
+            if (!codeHasText[kind.getCode() + 1]) {
+                simpleTokens[kind.getCode() + 1] = Token.simple(kind);
+            }
+        }
+    }
+
+    private static LexerDFA instance = null;
+
+    /**
+     * ASCII 字符到字符类的映射
+     */
+    private final int[] charClasses;
+
+    /**
+     * 非 ASCII 字符所属的字符类
+     */
+    private final int otherClass;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] accepts;
+    private final TokenKind[] acceptKinds;
+    private final boolean[] acceptHasText;
+
+    /**
+     * 以状态索引, 见 {@link #isSkipOnly(int)}
+     */
+    private final boolean[] skipOnly;
+
+    /**
+     * 以码点 + 1 索引: 该类型的词法单元是否带有文本, 以及不带文本的类型共享的简单 token
+     */
+    private final boolean[] codeHasText;
+    private final Token[] simpleTokens;
+}
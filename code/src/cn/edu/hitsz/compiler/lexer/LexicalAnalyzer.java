@@ -3,9 +3,13 @@ package cn.edu.hitsz.compiler.lexer;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.StreamSupport;
 
 /**
@@ -13,6 +17,10 @@ import java.util.stream.StreamSupport;
  * <br>
  * 你可能需要参考的框架代码如下:
  *
+ * <br>
+ * 词法分析的所有状态都属于实例本身, 不同实例之间互不影响. 单个实例不是线程安全的, 应当只在一个线程中使用;
+ * 若要并发地编译多个文件, 为每个文件分别构造 LexicalAnalyzer (及其符号表) 即可.
+ *
  * @see Token 词法单元的实现
  * @see TokenKind 词法单元类型的实现
  */
@@ -37,6 +45,27 @@ public class LexicalAnalyzer {
         source = FileUtils.readFile(path);
     }
 
+    /**
+     * 将文件映射到内存并直接扫描其中的 ASCII 字节, 不把文件解码为 String, 也不对换行符做任何转换.
+     * 适合非常大的源程序; 之后的用法与 {@link #loadFile(String)} 相同.
+     *
+     * @param path 路径
+     */
+    public void mapFile(String path) {
+        source = new AsciiSequence(FileUtils.mapFile(path));
+    }
+
+    /**
+     * 以流式读入的方式打开文件. 此后可以通过 {@link #lazyTokens()} 按需获取词法单元,
+     * 源程序不会被完整读入内存
+     *
+     * @param path 路径
+     */
+    public void openFile(String path) {
+        reader = FileUtils.openReader(path);
+        sourcePath = path;
+    }
+
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
@@ -44,150 +73,168 @@ public class LexicalAnalyzer {
     public void run() {
         // TODO: 自动机实现的词法分析过程
         // throw new NotImplementedException();
-        int sourceLength = source.length();
-        while (scanningPointer < sourceLength) {
-
-            while (BLANK_CHARACTERS.contains(currentCharacter())) {
-                startPointer += 1;
-                scanningPointer += 1;
-            }
-
-            if (isAlphabetOrUnderline(currentCharacter())) {
-                scanningPointer += 1;
-                while (isAlphabetOrUnderlineOrDigit(currentCharacter())) {
-                    scanningPointer += 1;
-                }
-                if ("int".equals(currentWord())) {
-                    tokens.add(Token.simple("int"));
-                } else if ("return".equals(currentWord())) {
-                    tokens.add(Token.simple("return"));
-                } else {
-                    tokens.add(Token.normal("id", currentWord()));
-                    if (!symbolTable.has(currentWord())) {
-                        symbolTable.add(currentWord());
-                    }
-                }
-                retract();
-            } else if (isDigit(currentCharacter())) {
-                while (isDigit(currentCharacter())) {
-                    scanningPointer += 1;
-                }
-                tokens.add(Token.normal("IntConst", currentWord()));
-                retract();
-            } else {
-                switch (currentCharacter()) {
-                    case '=' -> tokens.add(Token.simple("="));
-                    case ',' -> tokens.add(Token.simple(","));
-                    case ';' -> tokens.add(Token.simple("Semicolon"));
-                    case '+' -> tokens.add(Token.simple("+"));
-                    case '-' -> tokens.add(Token.simple("-"));
-                    case '*' -> tokens.add(Token.simple("*"));
-                    case '/' -> tokens.add(Token.simple("/"));
-                    case '(' -> tokens.add(Token.simple("("));
-                    case ')' -> tokens.add(Token.simple(")"));
-                    default -> {
-                    }
-                }
-            }
-
-            scanningPointer += 1;
-            startPointer = scanningPointer;
-
+        if (source == null) {
+            throw new RuntimeException("No source loaded");
         }
-        tokens.add(Token.eof());
+        tokens = new CompactTokens(source, symbolTable);
+        new TokenScanner(new TextSource(source), symbolTable).scanAll(tokens);
     }
 
     /**
-     * 获得词法分析的结果, 保证在调用了 run 方法之后调用
+     * 以分段并行的方式执行词法分析, 结果与 {@link #run()} 完全相同, 包括符号表中条目加入的顺序.
+     * 源程序须已通过 {@link #loadFile(String)} 或 {@link #mapFile(String)} 完整载入.
      *
-     * @return Token 列表
+     * @param pool      执行词法分析的线程池
+     * @param chunkSize 每段的大致字符数
      */
-    public Iterable<Token> getTokens() {
-        // TODO: 从词法分析过程中获取 Token 列表
-        // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
-        // 亦可以直接分析完整个文件
-        // 总之实现过程能转化为一列表即可
-        // throw new NotImplementedException();
-        return tokens;
+    public void runParallel(ForkJoinPool pool, int chunkSize) {
+        if (source == null) {
+            throw new RuntimeException("No source loaded");
+        }
+        tokens = new ParallelScanner(source, symbolTable, chunkSize).run(pool);
     }
 
-    public void dumpTokens(String path) {
-        FileUtils.writeLines(
-            path,
-            StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList()
-        );
+    /**
+     * 在公共线程池上以默认的分段大小执行分段并行的词法分析
+     *
+     * @see #runParallel(ForkJoinPool, int)
+     */
+    public void runParallel() {
+        runParallel(ForkJoinPool.commonPool(), ParallelScanner.DEFAULT_CHUNK_SIZE);
     }
 
     /**
-     * 获得单词扫描指针当前所指向的字符
-     * @return scanningPointer指向的字符
+     * 获得一个按需进行词法分析的迭代器, 每次调用 next 时才扫描下一个词法单元, 最后一个词法单元恒为 EOF.
+     * <br>
+     * 若之前调用了 {@link #openFile(String)}, 则直接从文件流中读取, 内存占用只与缓冲区窗口大小有关;
+     * 否则从 {@link #loadFile(String)} 读入的源程序中读取.
+     *
+     * @return Token 迭代器
      */
-    private Character currentCharacter() {
-        return source.charAt(scanningPointer);
+    public Iterator<Token> tokenIterator() {
+        final ScanSource input;
+        if (reader != null) {
+            input = new SourceBuffer(reader);
+            reader = null;
+        } else if (source != null) {
+            input = new TextSource(source);
+        } else {
+            throw new RuntimeException("No source loaded");
+        }
+
+        return new TokenScanner(input, symbolTable);
     }
 
     /**
-     * 获得startPointer与scanningPointer之间的字符串
-     * @return 当前所扫描出的单词
+     * 获得按需进行词法分析的 Token 序列, 可直接交给 {@link cn.edu.hitsz.compiler.parser.SyntaxAnalyzer#loadTokens(Iterable)}
+     * 使得语法分析每次只拉取一个 token. 返回的序列只能被遍历一次.
+     *
+     * @return 只能遍历一次的 Token 序列
      */
-    private String currentWord() {
-        return source.substring(startPointer, scanningPointer);
+    public Iterable<Token> lazyTokens() {
+        final var iterator = tokenIterator();
+        return () -> iterator;
     }
 
     /**
-     * 判断当前字符是否为26个英文字母或下划线
-     * @return 判断结果
+     * 同 {@link #lazyTokens()}, 但每扫描出一个词法单元就按 {@link #dumpTokens(String)} 的格式写入 {@code dump},
+     * 使流式分析也能输出完整的词法单元列表. {@code dump} 由调用者负责关闭
+     *
+     * @param dump 词法单元列表的输出
+     * @return 只能遍历一次的 Token 序列
      */
-    private boolean isAlphabetOrUnderline(char ch) {
-        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch == '_');
+    public Iterable<Token> lazyTokens(Writer dump) {
+        final var scanner = tokenIterator();
+        final var iterator = new Iterator<Token>() {
+            @Override
+            public boolean hasNext() {
+                return scanner.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                final var token = scanner.next();
+                try {
+                    dump.write(token.toString());
+                    dump.write(System.lineSeparator());
+                } catch (IOException e) {
+                    throw new RuntimeException("IO Exception on writing tokens", e);
+                }
+                return token;
+            }
+        };
+        return () -> iterator;
     }
 
     /**
-     * 判断当前字符是否为数字0-9
-     * @return 判断结果
+     * @return 按需进行词法分析的 Token Spliterator
      */
-    private boolean isDigit(char ch) {
-        return ch >= '0' && ch <= '9';
+    public Spliterator<Token> tokenSpliterator() {
+        return Spliterators.spliteratorUnknownSize(
+            tokenIterator(), Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
     }
 
     /**
-     * 判断当前字符是否为26个英文字母或下划线或数字0-9
-     * @return 判断结果
+     * 获得词法分析的结果, 保证在调用了 run 方法之后调用. 结果以紧凑形式存储, 遍历时才构造各个 Token
+     *
+     * @return Token 列表
      */
-    private boolean isAlphabetOrUnderlineOrDigit(char ch) {
-        return isAlphabetOrUnderline(ch) || isDigit(ch);
+    public Iterable<Token> getTokens() {
+        return getCompactTokens();
     }
 
     /**
-     * 读入无关字符并进入终止状态时，需要回退
+     * 获得词法分析结果的紧凑表示, 保证在调用了 run 方法之后调用
+     *
+     * @return 紧凑存储的 Token 序列
      */
-    private void retract() {
-        scanningPointer -= 1;
+    public CompactTokens getCompactTokens() {
+        // TODO: 从词法分析过程中获取 Token 列表
+        // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
+        // 亦可以直接分析完整个文件
+        // 总之实现过程能转化为一列表即可
+        // throw new NotImplementedException();
+        return tokens;
     }
 
     /**
-     * 待编译的源程序
+     * 获得各词法单元在源程序中的位置, 保证在调用了 run 或 runParallel 方法, 或以 {@link #openFile(String)} 打开了源程序之后调用.
+     * 流式分析时不保存偏移量, 位置只在第一次查询时重新扫描源程序求出, 见 {@link TokenPositions}
+     *
+     * @return 以词法单元序号索引的位置信息
      */
-    private static String source;
+    public TokenPositions getPositions() {
+        if (tokens == null && sourcePath != null) {
+            return new TokenPositions(sourcePath);
+        }
+        return new TokenPositions(getCompactTokens(), source);
+    }
+
+    public void dumpTokens(String path) {
+        FileUtils.writeLines(
+            path,
+            StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList()
+        );
+    }
 
     /**
-     * 词法分析所获得的 token 列表
+     * 待编译的源程序
      */
-    private static ArrayList<Token> tokens = new ArrayList<>();
+    private CharSequence source;
 
     /**
-     * 单词开始指针
+     * 词法分析所获得的 token 列表
      */
-    private static int startPointer = 0;
+    private CompactTokens tokens;
 
     /**
-     * 单词扫描指针
+     * 以流式读入方式打开的源程序
      */
-    private static int scanningPointer = 0;
+    private Reader reader;
 
     /**
-     * 存放空白字符的列表
+     * 以流式读入方式打开的源程序路径
      */
-    private static final List<Character> BLANK_CHARACTERS = Arrays.asList(' ', '\t', '\r', '\n');
+    private String sourcePath;
 
 }
@@ -0,0 +1,62 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.Arrays;
+
+/**
+ * 源程序的行首表, 用于将偏移量转换为行号与列号
+ * <br>
+ * 表中按顺序保存每一行第一个字符的偏移量, 查询时二分查找, 复杂度为 O(log n).
+ */
+public class LineMap {
+    /**
+     * 扫描源程序, 构造其行首表
+     *
+     * @param text 源程序
+     * @return 行首表
+     */
+    public static LineMap of(CharSequence text) {
+        var lineStarts = new int[64];
+        var count = 1;
+        final var length = text.length();
+        for (int offset = 0; offset < length; offset++) {
+            if (text.charAt(offset) == '\n') {
+                if (count == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, count * 2);
+                }
+                lineStarts[count++] = offset + 1;
+            }
+        }
+        return new LineMap(Arrays.copyOf(lineStarts, count));
+    }
+
+    /**
+     * @param offset 偏移量
+     * @return 该偏移量所在的行号, 从 1 开始
+     */
+    public int getLine(int offset) {
+        final var index = Arrays.binarySearch(lineStarts, offset);
+        // 未找到时 binarySearch 返回 -(插入点) - 1, 插入点的前一行即为所在行
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    /**
+     * @param offset 偏移量
+     * @return 该偏移量所在的列号, 从 1 开始
+     */
+    public int getColumn(int offset) {
+        return offset - lineStarts[getLine(offset) - 1] + 1;
+    }
+
+    /**
+     * @return 行数
+     */
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    private LineMap(int[] lineStarts) {
+        this.lineStarts = lineStarts;
+    }
+
+    private final int[] lineStarts;
+}
@@ -0,0 +1,137 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分段并行的词法分析
+ * <br>
+ * 源语言的语句都以分号结尾, 且分号之后跟任何字符都不会与之组成更长的词法单元 (见 {@link LexerDFA#isSafeBoundary(char)}),
+ * 因此可以在分号之后将源程序切分成若干段, 在 ForkJoinPool 上分别进行词法分析, 再按顺序拼接结果.
+ * <br>
+ * 每段使用自己的符号表收集标识符, 最后按段的顺序合并到真正的符号表中, 使得符号表中条目加入的顺序以及标识符的编号与顺序分析时完全相同;
+ * 各段中词法单元的标识符编号在拼接时被重写为合并后的编号.
+ */
+class ParallelScanner {
+    /**
+     * 默认每段的大小 (字符数)
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * 切分边界使用的字符
+     */
+    private static final char BOUNDARY = ';';
+
+    ParallelScanner(CharSequence source, SymbolTable symbolTable, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new RuntimeException("Chunk size must be positive");
+        }
+
+        this.source = source;
+        this.symbolTable = symbolTable;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 在给定的线程池上执行分段词法分析
+     *
+     * @param pool 线程池
+     * @return 所有词法单元 (包括末尾的 EOF)
+     */
+    CompactTokens run(ForkJoinPool pool) {
+        final var bounds = split();
+        final var chunkCount = bounds.length - 1;
+        final var chunkTokens = new CompactTokens[chunkCount];
+        final var chunkSymbols = new SymbolTable[chunkCount];
+
+        if (chunkCount == 1) {
+            scanChunk(0, bounds, chunkTokens, chunkSymbols);
+        } else {
+            pool.invoke(new ScanTask(0, chunkCount, bounds, chunkTokens, chunkSymbols));
+        }
+
+        final var symbolMaps = new ArrayList<int[]>(chunkCount);
+        for (final var symbols : chunkSymbols) {
+            symbolMaps.add(symbolTable.mergeFrom(symbols));
+        }
+        return CompactTokens.concat(source, symbolTable, Arrays.asList(chunkTokens), symbolMaps);
+    }
+
+    /**
+     * 在每隔约 chunkSize 个字符后的第一个边界字符之后切分源程序
+     *
+     * @return 各段的边界, 第 i 段为 [bounds[i], bounds[i + 1])
+     */
+    private int[] split() {
+        final var bounds = new ArrayList<Integer>();
+        bounds.add(0);
+
+        final var length = source.length();
+        if (LexerDFA.getInstance().isSafeBoundary(BOUNDARY)) {
+            var position = chunkSize;
+            while (position < length) {
+                while (position < length && source.charAt(position - 1) != BOUNDARY) {
+                    position += 1;
+                }
+                if (position < length) {
+                    bounds.add(position);
+                }
+                position += chunkSize;
+            }
+        }
+
+        bounds.add(length);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void scanChunk(int index, int[] bounds, CompactTokens[] chunkTokens, SymbolTable[] chunkSymbols) {
+        final var symbols = new SymbolTable();
+        final var tokens = new CompactTokens(source, symbols);
+        new TokenScanner(new TextSource(source, bounds[index], bounds[index + 1]), symbols).scanAll(tokens);
+        chunkTokens[index] = tokens;
+        chunkSymbols[index] = symbols;
+    }
+
+    /**
+     * 对 [from, to) 中的各段进行词法分析的任务, 段数多于一个时一分为二
+     */
+    private class ScanTask extends RecursiveAction {
+        ScanTask(int from, int to, int[] bounds, CompactTokens[] chunkTokens, SymbolTable[] chunkSymbols) {
+            this.from = from;
+            this.to = to;
+            this.bounds = bounds;
+            this.chunkTokens = chunkTokens;
+            this.chunkSymbols = chunkSymbols;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                scanChunk(from, bounds, chunkTokens, chunkSymbols);
+                return;
+            }
+
+            final var middle = (from + to) >>> 1;
+            invokeAll(
+                new ScanTask(from, middle, bounds, chunkTokens, chunkSymbols),
+                new ScanTask(middle, to, bounds, chunkTokens, chunkSymbols));
+        }
+
+        private final int from;
+        private final int to;
+        private final int[] bounds;
+        private final CompactTokens[] chunkTokens;
+        private final SymbolTable[] chunkSymbols;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private final CharSequence source;
+    private final SymbolTable symbolTable;
+    private final int chunkSize;
+}
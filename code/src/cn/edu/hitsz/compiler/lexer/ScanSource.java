@@ -0,0 +1,60 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 词法分析器读取源程序字符的接口
+ * <br>
+ * 扫描器只通过该接口访问源程序: 用 peek/advance 逐个读入字符, 用 markStart 标记单词的开始, 最长匹配失败时用 retractTo 回退.
+ * 偏移量均为字符在整个源程序中的绝对偏移量.
+ *
+ * @see SourceBuffer 基于定长窗口的流式读入
+ * @see TextSource 已完整读入内存的源程序
+ */
+interface ScanSource {
+    /**
+     * 代表已经读到输入末尾的字符值
+     */
+    int EOF = -1;
+
+    /**
+     * @return 扫描指针当前所指向的字符; 若已经到达输入末尾则返回 {@link #EOF}
+     */
+    int peek();
+
+    /**
+     * 扫描指针前进一个字符
+     */
+    void advance();
+
+    /**
+     * 将单词开始指针移动到扫描指针处
+     */
+    void markStart();
+
+    /**
+     * 将扫描指针退回到当前单词的第 {@code length} 个字符之后
+     *
+     * @param length 保留的单词长度
+     */
+    void retractTo(int length);
+
+    /**
+     * @return 当前单词开始处在源程序中的偏移量
+     */
+    long startOffset();
+
+    /**
+     * @return 单词开始指针与扫描指针之间的字符串
+     */
+    String lexeme();
+
+    /**
+     * 将当前单词作为标识符驻留到符号表中, 只有第一次出现的标识符才会构造字符串
+     *
+     * @param symbolTable 符号表
+     * @return 标识符的编号
+     * @see SymbolTable#intern(CharSequence, int, int)
+     */
+    int internLexeme(SymbolTable symbolTable);
+}
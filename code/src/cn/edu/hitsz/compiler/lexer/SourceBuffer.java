@@ -0,0 +1,193 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 词法分析用的定长滑动窗口缓冲区
+ * <br>
+ * 缓冲区只保存从当前单词开始指针到已读入位置之间的字符. 每当扫描指针到达窗口末尾时, 便把当前单词之前已经不再需要的字符丢弃,
+ * 将剩余部分移动到窗口开头, 再从 Reader 中补充读入. 空白在扫描过程中就被丢弃 (见 {@link LexerDFA#isSkipOnly(int)}),
+ * 因此无论源程序有多大, 占用的内存都只与窗口大小 (以及最长的单词) 有关.
+ * <br>
+ * 仅当一个单词比整个窗口还要长时窗口才会扩容, 最多扩容到 {@link #MAX_WINDOW_SIZE}; 更长的单词视为错误.
+ */
+class SourceBuffer implements ScanSource {
+    /**
+     * 默认窗口大小
+     */
+    static final int DEFAULT_WINDOW_SIZE = 8192;
+
+    /**
+     * 窗口扩容的上限, 即单个单词的最大长度
+     */
+    static final int MAX_WINDOW_SIZE = 1 << 20;
+
+    SourceBuffer(Reader reader) {
+        this(reader, DEFAULT_WINDOW_SIZE);
+    }
+
+    SourceBuffer(Reader reader, int windowSize) {
+        if (windowSize <= 0) {
+            throw new RuntimeException("Window size must be positive");
+        }
+
+        this.reader = reader;
+        this.window = new char[windowSize];
+        this.windowView = CharBuffer.wrap(window);
+    }
+
+    /**
+     * @return 扫描指针当前所指向的字符; 若已经到达输入末尾则返回 {@link #EOF}
+     */
+    @Override
+    public int peek() {
+        if (scanningPointer == limit && !fill()) {
+            return EOF;
+        }
+
+        return window[scanningPointer];
+    }
+
+    /**
+     * 扫描指针前进一个字符
+     */
+    @Override
+    public void advance() {
+        scanningPointer += 1;
+    }
+
+    /**
+     * 将单词开始指针移动到扫描指针处, 此前的字符都可以被丢弃
+     */
+    @Override
+    public void markStart() {
+        startPointer = scanningPointer;
+    }
+
+    /**
+     * 将扫描指针退回到当前单词的第 {@code length} 个字符之后, 用于最长匹配失败时的回退
+     *
+     * @param length 保留的单词长度
+     */
+    @Override
+    public void retractTo(int length) {
+        scanningPointer = startPointer + length;
+    }
+
+    @Override
+    public long startOffset() {
+        return discarded + startPointer;
+    }
+
+    /**
+     * @return 单词开始指针与扫描指针之间的字符串
+     */
+    @Override
+    public String lexeme() {
+        return new String(window, startPointer, scanningPointer - startPointer);
+    }
+
+    @Override
+    public int internLexeme(SymbolTable symbolTable) {
+        return symbolTable.intern(windowView, startPointer, scanningPointer);
+    }
+
+    /**
+     * 关闭底层的 Reader
+     */
+    void close() {
+        exhausted = true;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on closing source", e);
+        }
+    }
+
+    /**
+     * 向窗口中补充字符
+     *
+     * @return 是否读入了新的字符
+     */
+    private boolean fill() {
+        if (exhausted) {
+            return false;
+        }
+
+        // 丢弃当前单词之前的字符
+        if (startPointer > 0) {
+            System.arraycopy(window, startPointer, window, 0, limit - startPointer);
+            discarded += startPointer;
+            limit -= startPointer;
+            scanningPointer -= startPointer;
+            startPointer = 0;
+        }
+
+        // 当前单词占满了整个窗口, 只能扩容
+        if (limit == window.length) {
+            if (window.length >= MAX_WINDOW_SIZE) {
+                throw new RuntimeException("Lexeme at offset %d is longer than %d characters"
+                    .formatted(discarded, MAX_WINDOW_SIZE));
+            }
+            window = Arrays.copyOf(window, Math.min(window.length * 2, MAX_WINDOW_SIZE));
+            windowView = CharBuffer.wrap(window);
+        }
+
+        final int count;
+        try {
+            count = reader.read(window, limit, window.length - limit);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on reading source", e);
+        }
+
+        if (count <= 0) {
+            close();
+            return false;
+        }
+
+        limit += count;
+        return true;
+    }
+
+    private final Reader reader;
+
+    /**
+     * 滑动窗口
+     */
+    private char[] window;
+
+    /**
+     * 以 CharSequence 的形式访问窗口, 窗口扩容时随之更新
+     */
+    private CharBuffer windowView;
+
+    /**
+     * 单词开始指针
+     */
+    private int startPointer = 0;
+
+    /**
+     * 单词扫描指针
+     */
+    private int scanningPointer = 0;
+
+    /**
+     * 窗口中有效字符的末尾
+     */
+    private int limit = 0;
+
+    /**
+     * 已经被丢弃的字符数, 即窗口开头在源程序中的偏移量
+     */
+    private long discarded = 0;
+
+    /**
+     * 是否已经读完了所有输入
+     */
+    private boolean exhausted = false;
+}
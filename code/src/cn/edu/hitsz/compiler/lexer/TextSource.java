@@ -0,0 +1,81 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 已经完整读入内存的源程序
+ * <br>
+ * 由于整个源程序都在内存中, 词法单元只需要记录偏移量与长度, 其文本可以在需要时再从这里截取.
+ */
+class TextSource implements ScanSource {
+    TextSource(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * @param text  源程序
+     * @param begin 扫描的起始偏移量
+     * @param end   扫描的结束偏移量 (不包括)
+     */
+    TextSource(CharSequence text, int begin, int end) {
+        this.text = text;
+        this.end = end;
+        this.startPointer = begin;
+        this.scanningPointer = begin;
+    }
+
+    @Override
+    public int peek() {
+        return scanningPointer < end ? text.charAt(scanningPointer) : EOF;
+    }
+
+    @Override
+    public void advance() {
+        scanningPointer += 1;
+    }
+
+    @Override
+    public void markStart() {
+        startPointer = scanningPointer;
+    }
+
+    @Override
+    public void retractTo(int length) {
+        scanningPointer = startPointer + length;
+    }
+
+    @Override
+    public long startOffset() {
+        return startPointer;
+    }
+
+    @Override
+    public String lexeme() {
+        return text.subSequence(startPointer, scanningPointer).toString();
+    }
+
+    @Override
+    public int internLexeme(SymbolTable symbolTable) {
+        return symbolTable.intern(text, startPointer, scanningPointer);
+    }
+
+    /**
+     * @return 源程序
+     */
+    CharSequence getText() {
+        return text;
+    }
+
+    private final CharSequence text;
+    private final int end;
+
+    /**
+     * 单词开始指针
+     */
+    private int startPointer;
+
+    /**
+     * 单词扫描指针
+     */
+    private int scanningPointer;
+}
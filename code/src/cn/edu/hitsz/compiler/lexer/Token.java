@@ -1,5 +1,8 @@
 package cn.edu.hitsz.compiler.lexer;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 词法单元的实现, 你不应该修改该文件
  * <br>
@@ -14,11 +17,16 @@ package cn.edu.hitsz.compiler.lexer;
  * @see TokenKind 词法单元的类型, 其具有一定的复杂结构
  */
 public class Token {
+    /**
+     * 代表 token 不是标识符的符号编号
+     */
+    public static final int NO_SYMBOL = -1;
+
     /**
      * @return 代表 EOF 的 token
      */
     public static Token eof() {
-        return new Token(TokenKind.eof(), "");
+        return simple(TokenKind.eof());
     }
 
     /**
@@ -30,11 +38,13 @@ public class Token {
     }
 
     /**
+     * 简单 token 没有文本, 同一类型的简单 token 之间没有区别, 因此每种类型只构造一个实例
+     *
      * @param kind token 类型
      * @return 具有该 token 类型的一简单 token (不带其它文本表示, 比如标点/关键字)
      */
     public static Token simple(TokenKind kind) {
-        return normal(kind, "");
+        return simpleTokens.computeIfAbsent(kind, k -> new Token(k, "", NO_SYMBOL));
     }
 
     /**
@@ -51,7 +61,17 @@ public class Token {
      * @return 具有该 token 类型的一正常 token (带其它文本, 比如标识符/数字文本)
      */
     public static Token normal(TokenKind kind, String text) {
-        return new Token(kind, text);
+        return new Token(kind, text, NO_SYMBOL);
+    }
+
+    /**
+     * @param kind     token 类型
+     * @param text     标识符
+     * @param symbolId 标识符在符号表中驻留得到的编号
+     * @return 一个带有符号编号的标识符 token
+     */
+    public static Token identifier(TokenKind kind, String text, int symbolId) {
+        return new Token(kind, text, symbolId);
     }
 
     /**
@@ -75,16 +95,30 @@ public class Token {
         return text;
     }
 
+    /**
+     * @return 标识符在符号表中的编号; 对于不是标识符的 token 返回 {@link #NO_SYMBOL}
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
     @Override
     public String toString() {
         return "(%s,%s)".formatted(kind, text);
     }
 
-    private Token(TokenKind kind, String text) {
+    private Token(TokenKind kind, String text, int symbolId) {
         this.kind = kind;
         this.text = text;
+        this.symbolId = symbolId;
     }
 
     private final TokenKind kind;
     private final String text;
+    private final int symbolId;
+
+    /**
+     * 各类型的简单 token 实例
+     */
+    private static final Map<TokenKind, Token> simpleTokens = new ConcurrentHashMap<>();
 }
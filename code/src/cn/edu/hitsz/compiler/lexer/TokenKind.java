@@ -29,6 +29,7 @@ public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
     private static final Map<String, TokenKind> allowed = new HashMap<>();
     private static final TokenKind eof = new TokenKind("$", -1);
+    private static TokenKind[] byCode = new TokenKind[0];
 
     /**
      * 从码点文件中读取允许的标识符集合
@@ -52,6 +53,13 @@ public class TokenKind extends Term {
 
         // EOF
         allowed.put("$", eof);
+
+        // 码点到 TokenKind 的映射, 下标为码点 + 1 (EOF 的码点为 -1)
+        final var maxCode = allowed.values().stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        byCode = new TokenKind[maxCode + 2];
+        for (final var kind : allowed.values()) {
+            byCode[kind.getCode() + 1] = kind;
+        }
     }
 
     /**
@@ -86,6 +94,19 @@ public class TokenKind extends Term {
         return allowed.get(id);
     }
 
+    /**
+     * @param code 码点
+     * @return 具有该码点的 TokenKind
+     * @throws RuntimeException 码点文件尚未被读取, 或没有具有该码点的 TokenKind
+     */
+    public static TokenKind fromCode(int code) {
+        if (code + 1 < 0 || code + 1 >= byCode.length || byCode[code + 1] == null) {
+            throw new RuntimeException("Illegal code: " + code);
+        }
+
+        return byCode[code + 1];
+    }
+
     /**
      * @return 代表 EOF 的 TokenKind
      */
@@ -0,0 +1,84 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+/**
+ * 词法单元在源程序中的位置
+ * <br>
+ * 位置并不存放在 Token 对象中, 而是以词法单元的序号 (在词法单元序列中的下标) 索引 {@link CompactTokens} 中的偏移量数组,
+ * 再通过行首表换算为行号与列号. 行首表只在第一次查询时才构造, 因此正常编译时没有任何额外开销.
+ * <br>
+ * 流式分析时不保存各词法单元的偏移量, 第一次查询时才把源程序完整读入并重新扫描一遍. 查询通常只在报告错误时发生.
+ */
+public class TokenPositions {
+    TokenPositions(CompactTokens tokens, CharSequence source) {
+        this.tokens = tokens;
+        this.source = source;
+        this.path = null;
+    }
+
+    /**
+     * @param path 以流式读入方式分析的源程序路径
+     */
+    TokenPositions(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @param ordinal 词法单元的序号
+     * @return 该词法单元在源程序中的偏移量
+     */
+    public int getOffset(int ordinal) {
+        return getTokens().getStart(ordinal);
+    }
+
+    /**
+     * @param ordinal 词法单元的序号
+     * @return 该词法单元所在的行号, 从 1 开始
+     */
+    public int getLine(int ordinal) {
+        return getLineMap().getLine(getOffset(ordinal));
+    }
+
+    /**
+     * @param ordinal 词法单元的序号
+     * @return 该词法单元所在的列号, 从 1 开始
+     */
+    public int getColumn(int ordinal) {
+        return getLineMap().getColumn(getOffset(ordinal));
+    }
+
+    /**
+     * @param ordinal 词法单元的序号
+     * @return 形如 "line 3, column 5" 的位置描述
+     */
+    public String describe(int ordinal) {
+        final var offset = getOffset(ordinal);
+        return "line %d, column %d".formatted(getLineMap().getLine(offset), getLineMap().getColumn(offset));
+    }
+
+    private CompactTokens getTokens() {
+        if (tokens == null) {
+            final var symbolTable = new SymbolTable();
+            source = FileUtils.readFile(path);
+            tokens = new CompactTokens(source, symbolTable);
+            new TokenScanner(new TextSource(source), symbolTable).scanAll(tokens);
+        }
+        return tokens;
+    }
+
+    private LineMap getLineMap() {
+        if (lineMap == null) {
+            // 流式分析时 source 在重新扫描时才读入
+            getTokens();
+            lineMap = LineMap.of(source);
+        }
+        return lineMap;
+    }
+
+    private CompactTokens tokens;
+    private CharSequence source;
+    private final String path;
+    private LineMap lineMap;
+}
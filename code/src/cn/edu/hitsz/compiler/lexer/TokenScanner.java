@@ -0,0 +1,155 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 按需进行词法分析的 Token 迭代器
+ * <br>
+ * 每次调用 {@link #next()} 时才从缓冲区中扫描出下一个词法单元, 最后一个返回的词法单元恒为 EOF.
+ * 扫描过程中遇到的标识符会被驻留到符号表中 (见 {@link SymbolTable#intern(CharSequence, int, int)}). 也可以通过 {@link #scanAll(CompactTokens)} 一次扫描出所有词法单元的紧凑表示.
+ *
+ * @see ScanSource
+ * @see LexerDFA
+ */
+class TokenScanner implements Iterator<Token> {
+    TokenScanner(ScanSource source, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !eofReturned;
+    }
+
+    @Override
+    public Token next() {
+        if (eofReturned) {
+            throw new NoSuchElementException();
+        }
+
+        final var accept = scan();
+        if (accept == END) {
+            eofReturned = true;
+            return Token.eof();
+        }
+
+        final var kind = dfa.getAcceptKind(accept);
+        if (!dfa.hasText(accept)) {
+            return dfa.getSimpleToken(kind.getCode());
+        }
+        if (lastSymbolId != NO_SYMBOL) {
+            return Token.identifier(kind, symbolTable.getName(lastSymbolId), lastSymbolId);
+        }
+        return Token.normal(kind, source.lexeme());
+    }
+
+    /**
+     * 扫描出剩余的所有词法单元 (包括 EOF), 以紧凑的形式追加到 {@code tokens} 中, 不为词法单元构造对象.
+     * 紧凑表示以 int 存储偏移量, 只用于已完整读入内存的源程序
+     *
+     * @param tokens 输出
+     */
+    void scanAll(CompactTokens tokens) {
+        while (!eofReturned) {
+            final var accept = scan();
+            if (accept == END) {
+                eofReturned = true;
+                tokens.add(TokenKind.eof().getCode(), Math.toIntExact(lastStart), 0, NO_SYMBOL);
+            } else {
+                tokens.add(dfa.getAcceptKind(accept).getCode(), Math.toIntExact(lastStart), lastLength, lastSymbolId);
+            }
+        }
+    }
+
+    /**
+     * 扫描出下一个词法单元, 其位置记录在 lastStart 与 lastLength 中; 对于标识符, 其编号记录在 lastSymbolId 中
+     *
+     * @return 词法单元在自动机中的编号; 若已经到达输入末尾则返回 {@link #END}
+     */
+    private int scan() {
+        while (true) {
+            source.markStart();
+
+            // 按最长匹配原则运行自动机, 记录最后一次经过的接受状态
+            var state = LexerDFA.START;
+            var length = 0;
+            var accept = LexerDFA.NO_ACCEPT;
+            var acceptLength = 0;
+            var ch = source.peek();
+            while (ch != ScanSource.EOF) {
+                state = dfa.next(state, ch);
+                if (state == LexerDFA.DEAD) {
+                    break;
+                }
+
+                source.advance();
+                length += 1;
+                final var stateAccept = dfa.getAccept(state);
+                if (stateAccept != LexerDFA.NO_ACCEPT) {
+                    accept = stateAccept;
+                    acceptLength = length;
+                }
+                if (dfa.isSkipOnly(state)) {
+                    // 之后只可能继续匹配空白, 已经读入的空白可以立即丢弃, 很长的空白也不会留在缓冲区中
+                    source.markStart();
+                    length = 0;
+                    acceptLength = 0;
+                }
+                ch = source.peek();
+            }
+
+            if (length == 0 && ch == ScanSource.EOF) {
+                lastStart = source.startOffset();
+                lastLength = 0;
+                return END;
+            }
+
+            if (accept == LexerDFA.NO_ACCEPT) {
+                // 无法识别的字符直接跳过
+                source.retractTo(1);
+                continue;
+            }
+
+            source.retractTo(acceptLength);
+            if (accept == LexerDFA.SKIP) {
+                continue;
+            }
+
+            lastStart = source.startOffset();
+            lastLength = acceptLength;
+            lastSymbolId = dfa.getAcceptKind(accept) == idKind ? source.internLexeme(symbolTable) : NO_SYMBOL;
+            return accept;
+        }
+    }
+
+    /**
+     * 代表已经到达输入末尾
+     */
+    private static final int END = -1;
+
+    /**
+     * 代表词法单元不是标识符
+     */
+    private static final int NO_SYMBOL = Token.NO_SYMBOL;
+
+    private final LexerDFA dfa = LexerDFA.getInstance();
+    private final TokenKind idKind = TokenKind.fromString("id");
+    private final ScanSource source;
+    private final SymbolTable symbolTable;
+
+    /**
+     * 是否已经返回过 EOF
+     */
+    private boolean eofReturned = false;
+
+    /**
+     * 最近一次扫描出的词法单元的起始偏移量, 长度与标识符编号
+     */
+    private long lastStart;
+    private int lastLength;
+    private int lastSymbolId = NO_SYMBOL;
+}
@@ -2,6 +2,7 @@ package cn.edu.hitsz.compiler.parser;
 
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -54,4 +55,48 @@ public interface ActionObserver {
      * @param table 符号表
      */
     void setSymbolTable(SymbolTable table);
+
+    /**
+     * 分析表可能跳过了单产生式 (形如 A -> B) 的规约 (见 {@link cn.edu.hitsz.compiler.parser.table.CompiledLRTable#bypassUnitProductions()}),
+     * 此时驱动程序会在规约之后向观察者补发这些被跳过的规约, 使得观察者看到的规约序列与未跳过时相同.
+     * 对单产生式的规约不做任何事情 (只是把栈顶原样留下) 的观察者可以返回 false, 不再接收补发的规约.
+     *
+     * @return 是否需要接收被跳过的单产生式规约, 默认为 true
+     */
+    default boolean wantsUnitReductions() {
+        return true;
+    }
+
+    /**
+     * 观察者可以只关心部分词法单元的移入. 驱动程序在开始分析时据此为每种词法单元预先求出需要通知的观察者,
+     * 对不关心的词法单元不会调用 {@link #whenShift(Status, Token)}
+     *
+     * @param kind 词法单元类型
+     * @return 是否需要在移入该类型的词法单元时被通知, 默认为 true
+     */
+    default boolean observesShift(TokenKind kind) {
+        return true;
+    }
+
+    /**
+     * 观察者可以只关心部分产生式的规约. 驱动程序在开始分析时据此为每条产生式预先求出需要通知的观察者,
+     * 对不关心的产生式不会调用 {@link #whenReduce(Status, Production)}, 也不会补发它被跳过的规约
+     *
+     * @param production 产生式
+     * @return 是否需要在规约该产生式时被通知, 默认为 true
+     */
+    default boolean observesReduce(Production production) {
+        return true;
+    }
+
+    /**
+     * 驱动程序开启异步模式 (见 {@link SyntaxAnalyzer#enableAsyncObservers()}) 时, 与驱动程序及其它观察者之间没有先后依赖的观察者
+     * 会在独立的线程上按顺序收到同样的通知, 在 {@link SyntaxAnalyzer#run()} 返回前处理完毕.
+     * 只维护自己状态, 且在分析过程中不与其它观察者共享可变数据的观察者可以返回 false.
+     *
+     * @return 是否必须在驱动程序的线程上与其它观察者按顺序执行, 默认为 true
+     */
+    default boolean isOrderDependent() {
+        return true;
+    }
 }
@@ -0,0 +1,215 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * 所有语义动作共用的属性栈
+ * <br>
+ * 与 yacc 的值栈相同, 栈中每个位置对应分析栈中的一个文法符号: 移入时压入词法单元本身, 规约时把产生式体对应的各个位置交给为该产生式注册的
+ * 语义动作 (见 {@link SemanticAction}), 再以其返回值作为产生式头的属性压入栈中. 没有注册语义动作的产生式采用默认动作
+ * {@code $$ = $1}: 产生式头的属性就是产生式体第一个符号的属性 (产生式体为空时为 null).
+ * <br>
+ * 这样各组语义动作 (见 {@link SemanticActions}) 不必各自维护一个栈, 也不必为不关心的产生式压入占位记录.
+ * 该类由 {@link SyntaxAnalyzer#registerSemanticActions(SemanticActions)} 创建并注册为观察者.
+ */
+public final class AttributeStack implements ActionObserver {
+    /**
+     * 产生式规约时执行的语义动作
+     */
+    @FunctionalInterface
+    public interface SemanticAction {
+        /**
+         * @param slots 产生式体各符号的属性, 仅在本次调用中有效
+         * @return 产生式头的属性
+         */
+        Object reduce(Slots slots);
+    }
+
+    /**
+     * 属性栈栈顶的一段, 对应一次规约中产生式体的各个符号
+     */
+    public static final class Slots {
+        /**
+         * @return 产生式体的长度
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * @param index 符号在产生式体中的位置, 从 0 开始
+         * @return 该位置的属性
+         */
+        public Object get(int index) {
+            if (index < 0 || index >= length) {
+                throw new RuntimeException("Slot %d is out of a production body of length %d".formatted(index, length));
+            }
+            return stack.values[base + index];
+        }
+
+        /**
+         * @param index 符号在产生式体中的位置, 从 0 开始
+         * @param type  属性的类型
+         * @return 该位置的属性
+         */
+        public <T> T get(int index, Class<T> type) {
+            final var value = get(index);
+            if (!type.isInstance(value)) {
+                throw new RuntimeException("Slot %d holds %s, not a %s".formatted(index, value, type.getSimpleName()));
+            }
+            return type.cast(value);
+        }
+
+        /**
+         * @param index 终结符在产生式体中的位置, 从 0 开始
+         * @return 移入该终结符时的词法单元
+         */
+        public Token token(int index) {
+            return get(index, Token.class);
+        }
+
+        private Slots(AttributeStack stack) {
+            this.stack = stack;
+        }
+
+        private final AttributeStack stack;
+        private int base;
+        private int length;
+    }
+
+    /**
+     * @param productions 由产生式编号查找产生式, 用于判断注册了语义动作的产生式是否为单产生式
+     */
+    AttributeStack(IntFunction<Production> productions) {
+        this.productions = productions;
+    }
+
+    /**
+     * 加入一组语义动作, 由驱动程序在注册语义动作时调用
+     *
+     * @param actions 语义动作
+     */
+    void attach(SemanticActions actions) {
+        orderDependent |= actions.isOrderDependent();
+        actions.registerActions(this);
+    }
+
+    /**
+     * 为一条产生式注册语义动作
+     * <br>
+     * 同一条产生式可以被多组语义动作注册 (比如语义检查与 IR 生成都关心 {@code S -> id = E}): 规约时各个动作按注册的先后依次执行,
+     * 看到的是同样的产生式体属性, 而只有最后注册的动作的返回值作为产生式头的属性, 之前的动作的返回值被丢弃.
+     * 因此只产生副作用 (如填写符号表) 的动作应当先于计算属性值的动作注册.
+     *
+     * @param productionIndex 产生式编号 ({@link Production#index()})
+     * @param action          语义动作
+     */
+    public void register(int productionIndex, SemanticAction action) {
+        if (productionIndex >= actions.length) {
+            actions = Arrays.copyOf(actions, Math.max(productionIndex + 1, actions.length * 2));
+        }
+        final var previous = actions[productionIndex];
+        if (previous == null) {
+            actions[productionIndex] = action;
+        } else {
+            actions[productionIndex] = slots -> {
+                previous.reduce(slots);
+                return action.reduce(slots);
+            };
+        }
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        push(currentToken);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        final var length = production.body().size();
+        final var base = size - length;
+        final var index = production.index();
+        final var action = index < actions.length ? actions[index] : null;
+
+        final Object value;
+        if (action != null) {
+            slots.base = base;
+            slots.length = length;
+            value = action.reduce(slots);
+        } else {
+            value = length > 0 ? values[base] : null;
+        }
+
+        Arrays.fill(values, base, size, null);
+        size = base;
+        push(value);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // 接受时属性栈中只剩开始符号的属性, 无需其它动作
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 符号表由 SyntaxAnalyzer 直接交给各组语义动作
+    }
+
+    /**
+     * 只有为单产生式注册了语义动作时才需要接收被跳过的单产生式规约; 否则默认动作 $$ = $1 只是把栈顶原样留下
+     */
+    @Override
+    public boolean wantsUnitReductions() {
+        for (int index = 0; index < actions.length; index++) {
+            if (actions[index] != null && isUnitProduction(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 属性栈本身只由语义动作读写, 是否依赖顺序取决于加入的各组语义动作 (见 {@link SemanticActions#isOrderDependent()})
+     */
+    @Override
+    public boolean isOrderDependent() {
+        return orderDependent;
+    }
+
+    private boolean isUnitProduction(int index) {
+        final var body = productions.apply(index).body();
+        return body.size() == 1 && body.get(0) instanceof NonTerminal;
+    }
+
+    private void push(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+    private final Slots slots = new Slots(this);
+
+    /**
+     * 以产生式编号索引的语义动作, 没有注册的为 null
+     */
+    private SemanticAction[] actions = new SemanticAction[INITIAL_CAPACITY];
+
+    private final IntFunction<Production> productions;
+
+    /**
+     * 是否有依赖先后顺序的语义动作
+     */
+    private boolean orderDependent = false;
+
+    private static final int INITIAL_CAPACITY = 64;
+}
@@ -4,129 +4,73 @@ import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
 import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.TempAllocator;
 import cn.edu.hitsz.compiler.lexer.Token;
-import cn.edu.hitsz.compiler.parser.table.Production;
-import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 // TODO: 实验三: 实现 IR 生成
 
 /**
  *
  */
-public class IRGenerator implements ActionObserver {
-
-    @Override
-    public void whenShift(Status currentStatus, Token currentToken) {
-        // TODO
-        // throw new NotImplementedException();
-        irGeneratorStack.push(new IRGeneratorStackEntry(currentToken));
-    }
-
-    @Override
-    public void whenReduce(Status currentStatus, Production production) {
-        // TODO
-        // throw new NotImplementedException();
-        switch (production.index()) {
-            case 6 -> {
-                // S -> id = E
-                var from = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                var token = irGeneratorStack.pop().getToken();
-                var text = token.getText();
-                if (!symbolTable.has(text)) {
-                    throw new RuntimeException("No such id in symbolTable!");
-                }
-                var result = IRVariable.named(text);
-                instructions.add(Instruction.createMov(result, from));
-                irGeneratorStack.push(new IRGeneratorStackEntry());
-            }
-            case 7 -> {
-                // S -> return E
-                var returnValue = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                instructions.add(Instruction.createRet(returnValue));
-                irGeneratorStack.push(new IRGeneratorStackEntry());
-            }
-            case 8 -> {
-                // E -> E + A
-                var rhs = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                var lhs = irGeneratorStack.pop().getIrValue();
-                var result = IRVariable.temp();
-                instructions.add(Instruction.createAdd(result, lhs, rhs));
-                irGeneratorStack.push(new IRGeneratorStackEntry(result));
-            }
-            case 9 -> {
-                // E -> E - A
-                var rhs = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                var lhs = irGeneratorStack.pop().getIrValue();
-                var result = IRVariable.temp();
-                instructions.add(Instruction.createSub(result, lhs, rhs));
-                irGeneratorStack.push(new IRGeneratorStackEntry(result));
-            }
-            case 10, 12 -> {
-                // E -> A, A -> B
-                var irValue = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.push(new IRGeneratorStackEntry(irValue));
-            }
-            case 11 -> {
-                // A -> A * B
-                var rhs = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                var lhs = irGeneratorStack.pop().getIrValue();
-                var result = IRVariable.temp();
-                instructions.add(Instruction.createMul(result, lhs, rhs));
-                irGeneratorStack.push(new IRGeneratorStackEntry(result));
-            }
-            case 13 -> {
-                // B -> ( E )
-                irGeneratorStack.pop();
-                var irValue = irGeneratorStack.pop().getIrValue();
-                irGeneratorStack.pop();
-                irGeneratorStack.push(new IRGeneratorStackEntry(irValue));
-            }
-            case 14 -> {
-                // B -> id
-                var token = irGeneratorStack.pop().getToken();
-                var text = token.getText();
-                if (!symbolTable.has(text)) {
-                    throw new RuntimeException("No such id in symbolTable!");
-                }
-                var irVariable = IRVariable.named(text);
-                irGeneratorStack.push(new IRGeneratorStackEntry(irVariable));
-            }
-            case 15 -> {
-                // B -> IntConst
-                var token = irGeneratorStack.pop().getToken();
-                var irImmediate = IRImmediate.of(Integer.parseInt(token.getText()));
-                irGeneratorStack.push(new IRGeneratorStackEntry(irImmediate));
-            }
-            default -> {
-                // 其它产生式直接弹栈即可
-                int num = production.body().size();
-                while (num > 0) {
-                    irGeneratorStack.pop();
-                    num--;
-                }
-                // 压入空记录占位
-                irGeneratorStack.push(new IRGeneratorStackEntry());
-            }
-        }
+public class IRGenerator implements SemanticActions {
+    /**
+     * @param temps 本次编译的临时变量分配器
+     */
+    public IRGenerator(TempAllocator temps) {
+        this.temps = temps;
     }
 
-
     @Override
-    public void whenAccept(Status currentStatus) {
-        // TODO
-        // throw new NotImplementedException();
-        // 空实现 (遇到 Accept 时语义分析可以结束, 无需进行其它动作)
+    public void registerActions(AttributeStack attributes) {
+        // S -> id = E
+        attributes.register(6, slots -> {
+            final var result = variableOf(slots.token(0));
+            instructions.add(Instruction.createMov(result, slots.get(2, IRValue.class)));
+            return null;
+        });
+
+        // S -> return E
+        attributes.register(7, slots -> {
+            instructions.add(Instruction.createRet(slots.get(1, IRValue.class)));
+            return null;
+        });
+
+        // E -> E + A
+        attributes.register(8, slots -> {
+            final var result = temps.next();
+            instructions.add(Instruction.createAdd(result, slots.get(0, IRValue.class), slots.get(2, IRValue.class)));
+            return result;
+        });
+
+        // E -> E - A
+        attributes.register(9, slots -> {
+            final var result = temps.next();
+            instructions.add(Instruction.createSub(result, slots.get(0, IRValue.class), slots.get(2, IRValue.class)));
+            return result;
+        });
+
+        // E -> A, A -> B 使用默认动作, 直接把产生式体的值作为产生式头的值
+
+        // A -> A * B
+        attributes.register(11, slots -> {
+            final var result = temps.next();
+            instructions.add(Instruction.createMul(result, slots.get(0, IRValue.class), slots.get(2, IRValue.class)));
+            return result;
+        });
+
+        // B -> ( E )
+        attributes.register(13, slots -> slots.get(1, IRValue.class));
+
+        // B -> id
+        attributes.register(14, slots -> variableOf(slots.token(0)));
+
+        // B -> IntConst
+        attributes.register(15, slots -> IRImmediate.of(Integer.parseInt(slots.token(0).getText())));
     }
 
     @Override
@@ -136,6 +80,18 @@ public class IRGenerator implements ActionObserver {
         this.symbolTable = table;
     }
 
+    /**
+     * @param token id 对应的词法单元
+     * @return 该 id 对应的 IR 变量
+     */
+    private IRVariable variableOf(Token token) {
+        final var symbolId = token.getSymbolId();
+        if (!symbolTable.has(symbolId)) {
+            throw new RuntimeException("No such id in symbolTable!");
+        }
+        return IRVariable.named(symbolId, token.getText());
+    }
+
     public List<Instruction> getIR() {
         // TODO
         // throw new NotImplementedException();
@@ -151,44 +107,13 @@ public class IRGenerator implements ActionObserver {
      */
     private SymbolTable symbolTable;
 
+    /**
+     * 临时变量分配器
+     */
+    private final TempAllocator temps;
+
     /**
      * 生成得到的 Instruction 列表
      */
     private final List<Instruction> instructions = new ArrayList<>();
-
-    private final Stack<IRGeneratorStackEntry> irGeneratorStack = new Stack<>();
 }
-
-class IRGeneratorStackEntry {
-    private final Token token;
-    private final IRValue irValue;
-
-    public IRGeneratorStackEntry(Token token) {
-        this.token = token;
-        this.irValue = null;
-    }
-
-    public IRGeneratorStackEntry(IRValue irValue) {
-        this.token = null;
-        this.irValue = irValue;
-    }
-
-    public IRGeneratorStackEntry() {
-        this.token = null;
-        this.irValue = null;
-    }
-
-    public Token getToken() {
-        if (this.token == null) {
-            throw new RuntimeException("Not a token!");
-        }
-        return this.token;
-    }
-
-    public IRValue getIrValue() {
-        if (this.irValue == null) {
-            throw new RuntimeException("Not an irValue!");
-        }
-        return this.irValue;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,317 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * 异步通知观察者的事件流水线
+ * <br>
+ * 驱动程序把移入, 规约, 接受事件依次写入一个定长的环形缓冲区: 每个事件在整数数组中占 {@link #EVENT_WIDTH} 个位置
+ * (事件类型, 状态编号, 产生式编号, 当前词法单元的序号), 移入的词法单元对象另存在同一下标的词法单元数组中,
+ * 序号用于在观察者出错时报告位置. 每个独立的观察者
+ * (见 {@link ActionObserver#isOrderDependent()}) 在自己的线程上按顺序读取事件并调用对应的回调, 各自记录读到的位置;
+ * 驱动程序只在缓冲区被最慢的观察者占满时才等待. 这样语法分析与语义动作, IR 生成可以在不同的核心上重叠执行.
+ * <br>
+ * 缓冲区只有驱动程序一个写者, 事件通过 {@link #published} 的 volatile 写发布给各读者.
+ */
+final class ObserverPipeline {
+    /**
+     * @param table     分析表, 用于由编号取回状态与产生式
+     * @param observers 在其它线程上运行的观察者
+     * @param capacity  缓冲区可容纳的事件数, 必须为 2 的幂
+     * @param positions 由词法单元的序号求出位置的描述, 用于报告观察者的错误
+     */
+    ObserverPipeline(ParseTable table, List<ActionObserver> observers, int capacity, IntFunction<String> positions) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new RuntimeException("Pipeline capacity must be a power of two: " + capacity);
+        }
+        this.table = table;
+        this.positions = positions;
+        this.mask = capacity - 1;
+        this.events = new int[capacity * EVENT_WIDTH];
+        this.tokens = new Token[capacity];
+        for (final var observer : observers) {
+            consumers.add(new Consumer(observer));
+        }
+    }
+
+    /**
+     * 启动各观察者的线程
+     */
+    void start() {
+        for (final var consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    /**
+     * @param state   执行移入时的状态编号
+     * @param ordinal 移入的词法单元的序号
+     * @param token   移入的词法单元
+     */
+    void publishShift(int state, int ordinal, Token token) {
+        publish(SHIFT, state, 0, ordinal, token);
+    }
+
+    /**
+     * @param state      执行规约时的状态编号
+     * @param production 产生式编号
+     * @param ordinal    向前看的词法单元的序号
+     */
+    void publishReduce(int state, int production, int ordinal) {
+        publish(REDUCE, state, production, ordinal, null);
+    }
+
+    /**
+     * 发布分析表跳过, 由驱动程序补发的单产生式规约, 只有需要它们的观察者会收到
+     *
+     * @param state      执行规约时的状态编号
+     * @param production 产生式编号
+     * @param ordinal    向前看的词法单元的序号
+     */
+    void publishElidedReduce(int state, int production, int ordinal) {
+        publish(ELIDED_REDUCE, state, production, ordinal, null);
+    }
+
+    /**
+     * @param state   接受时的状态编号
+     * @param ordinal 向前看的词法单元的序号
+     */
+    void publishAccept(int state, int ordinal) {
+        publish(ACCEPT, state, 0, ordinal, null);
+    }
+
+    /**
+     * 通知各观察者事件流结束并等待它们处理完所有事件. 无论分析是否成功都应该调用
+     */
+    void close() {
+        publish(END, 0, 0, 0, null);
+        for (final var consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for observer " + consumer.observer, e);
+            }
+        }
+    }
+
+    /**
+     * 若有观察者在处理事件时抛出异常, 则在调用线程上重新抛出第一个异常
+     */
+    void rethrowFailure() {
+        final var cause = failure.get();
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        } else if (cause instanceof Error error) {
+            throw error;
+        } else if (cause != null) {
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void publish(int kind, int state, int production, int ordinal, Token token) {
+        final var sequence = published.get();
+        if (sequence - gatingSequence >= tokens.length) {
+            awaitCapacity(sequence);
+        }
+
+        final var slot = (int) (sequence & mask);
+        final var base = slot * EVENT_WIDTH;
+        events[base] = kind;
+        events[base + 1] = state;
+        events[base + 2] = production;
+        events[base + 3] = ordinal;
+        tokens[slot] = token;
+        published.set(sequence + 1);
+    }
+
+    /**
+     * 等待最慢的观察者读完足够多的事件, 使缓冲区中有空位写入第 sequence 个事件
+     */
+    private void awaitCapacity(long sequence) {
+        for (int attempt = 0; ; attempt++) {
+            var slowest = Long.MAX_VALUE;
+            for (final var consumer : consumers) {
+                slowest = Math.min(slowest, consumer.consumed.get());
+            }
+            gatingSequence = slowest;
+            if (sequence - gatingSequence < tokens.length) {
+                return;
+            }
+            idle(attempt);
+        }
+    }
+
+    /**
+     * 等待时先自旋, 再让出处理器, 最后短暂休眠, 避免在核心数少的机器上空转
+     */
+    private static void idle(int attempt) {
+        if (attempt < SPIN_ATTEMPTS) {
+            Thread.onSpinWait();
+        } else if (attempt < YIELD_ATTEMPTS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * 一个在独立线程上读取事件的观察者
+     */
+    private final class Consumer implements Runnable {
+        Consumer(ActionObserver observer) {
+            this.observer = observer;
+            this.thread = new Thread(this, "observer-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+
+            final var terminals = table.getTerminals();
+            final var codeBound = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1) + 2;
+            this.shifts = new boolean[codeBound];
+            for (final var kind : terminals) {
+                shifts[kind.getCode() + 1] = observer.observesShift(kind);
+            }
+            this.reductions = new boolean[table.getProductionCount()];
+            this.elidedReductions = new boolean[table.getProductionCount()];
+            for (int index = 0; index < reductions.length; index++) {
+                final var production = table.getProduction(index);
+                reductions[index] = production != null && observer.observesReduce(production);
+                elidedReductions[index] = reductions[index] && observer.wantsUnitReductions();
+            }
+        }
+
+        @Override
+        public void run() {
+            var next = 0L;
+            try {
+                while (true) {
+                    var available = published.get();
+                    for (int attempt = 0; next >= available; attempt++) {
+                        idle(attempt);
+                        available = published.get();
+                    }
+                    for (; next < available; next++) {
+                        if (!dispatch((int) (next & mask))) {
+                            consumed.set(next + 1);
+                            return;
+                        }
+                    }
+                    consumed.set(next);
+                }
+            } catch (RuntimeException cause) {
+                // 出错的事件还未被标记为读完, 不会被驱动程序覆盖
+                final var ordinal = events[(int) (next & mask) * EVENT_WIDTH + 3];
+                fail(new RuntimeException("Observer %s failed at %s".formatted(
+                    observer.getClass().getName(), positions.apply(ordinal)), cause));
+            } catch (Throwable cause) {
+                fail(cause);
+            }
+        }
+
+        /**
+         * 记录异常, 并不再读取事件, 让驱动程序不必等待该观察者
+         */
+        private void fail(Throwable cause) {
+            failure.compareAndSet(null, cause);
+            consumed.set(Long.MAX_VALUE);
+        }
+
+        /**
+         * @return 事件流是否还未结束
+         */
+        private boolean dispatch(int slot) {
+            final var base = slot * EVENT_WIDTH;
+            final var state = events[base + 1];
+            final var production = events[base + 2];
+            switch (events[base]) {
+                case SHIFT -> {
+                    final var token = tokens[slot];
+                    if (shifts[token.getKind().getCode() + 1]) {
+                        observer.whenShift(table.getStatus(state), token);
+                    }
+                }
+                case REDUCE -> {
+                    if (reductions[production]) {
+                        observer.whenReduce(table.getStatus(state), table.getProduction(production));
+                    }
+                }
+                case ELIDED_REDUCE -> {
+                    if (elidedReductions[production]) {
+                        observer.whenReduce(table.getStatus(state), table.getProduction(production));
+                    }
+                }
+                case ACCEPT -> observer.whenAccept(table.getStatus(state));
+                case END -> {
+                    return false;
+                }
+                default -> throw new RuntimeException("Unknown pipeline event: " + events[base]);
+            }
+            return true;
+        }
+
+        private final ActionObserver observer;
+        private final Thread thread;
+
+        /**
+         * 已经读完的事件数, 由驱动程序读取以判断缓冲区是否有空位
+         */
+        private final AtomicLong consumed = new AtomicLong();
+
+        /**
+         * 以词法单元类型的码点 + 1 索引, 是否关心该类型的移入
+         */
+        private final boolean[] shifts;
+
+        /**
+         * 以产生式编号索引, 是否关心该产生式的规约与补发的规约
+         */
+        private final boolean[] reductions;
+        private final boolean[] elidedReductions;
+    }
+
+    private final ParseTable table;
+    private final IntFunction<String> positions;
+    private final List<Consumer> consumers = new ArrayList<>();
+
+    /**
+     * 事件缓冲区, 第 i 个事件位于下标 (i & mask) * EVENT_WIDTH 处, 移入的词法单元位于 tokens[i & mask]
+     */
+    private final int[] events;
+    private final Token[] tokens;
+    private final int mask;
+
+    /**
+     * 已经发布的事件数
+     */
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * 上次求出的最慢观察者读到的位置, 只由驱动程序线程访问
+     */
+    private long gatingSequence = 0;
+
+    /**
+     * 观察者抛出的第一个异常
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private static final int EVENT_WIDTH = 4;
+
+    private static final int SHIFT = 0;
+    private static final int REDUCE = 1;
+    private static final int ELIDED_REDUCE = 2;
+    private static final int ACCEPT = 3;
+    private static final int END = 4;
+
+    private static final int SPIN_ATTEMPTS = 64;
+    private static final int YIELD_ATTEMPTS = 128;
+    private static final long PARK_NANOS = 50_000;
+}
@@ -0,0 +1,156 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.BinaryTableFile;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * 将语法分析中的移入, 规约, 接受事件写成紧凑的二进制日志, 供 {@link ParseEventReplay} 在不运行词法与语法分析的情况下重放
+ * <br>
+ * 文件格式: 文件头为 int magic ('PEVL'), int version, long checksum (文法与码点文件的校验和, 见
+ * {@link BinaryTableFile#checksum(String...)}), 之后是依次排列的事件, 各字段均为无符号变长整数 (每字节 7 位, 低位在前):
+ * <pre>
+ * (state << 2) | kind      事件类型与执行该动作时的状态编号
+ * SHIFT:  kindCode + 1, symbolId + 1, 文本 (变长整数长度 + UTF-8 字节)
+ *         同一个标识符只在第一次出现时写出文本
+ * REDUCE: production       产生式编号
+ * ACCEPT: 无
+ * </pre>
+ * 日志记录的是完整的规约序列: 分析表跳过的单产生式规约也会补发给该观察者 (见 {@link ActionObserver#wantsUnitReductions()}).
+ * 日志在接受时关闭; 分析出错时调用者应当自行调用 {@link #close()}.
+ */
+public final class ParseEventLog implements ActionObserver, AutoCloseable {
+    /**
+     * @param path 日志文件路径, 已存在时被覆盖
+     */
+    public ParseEventLog(String path) {
+        this.path = path;
+        this.channel = FileUtils.openForWrite(path);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(BinaryTableFile.checksum());
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        ensureRemaining(MAX_VARINT_BYTES * 4);
+        putVarint((currentStatus.index() << 2) | SHIFT);
+        putVarint(currentToken.getKind().getCode() + 1);
+
+        final var symbolId = currentToken.getSymbolId();
+        putVarint(symbolId + 1);
+        if (symbolId != Token.NO_SYMBOL) {
+            if (loggedSymbols.get(symbolId)) {
+                return;
+            }
+            loggedSymbols.set(symbolId);
+        }
+
+        final var text = currentToken.getText().getBytes(StandardCharsets.UTF_8);
+        putVarint(text.length);
+        if (text.length > buffer.remaining()) {
+            flush();
+            if (text.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(text));
+                return;
+            }
+        }
+        buffer.put(text);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        ensureRemaining(MAX_VARINT_BYTES * 2);
+        putVarint((currentStatus.index() << 2) | REDUCE);
+        putVarint(production.index());
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        ensureRemaining(MAX_VARINT_BYTES);
+        putVarint((currentStatus.index() << 2) | ACCEPT);
+        close();
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 标识符的文本直接写入日志, 不需要符号表
+    }
+
+    @Override
+    public boolean isOrderDependent() {
+        // 只写自己的文件
+        return false;
+    }
+
+    /**
+     * 写出缓冲区中剩余的事件并关闭文件, 可以重复调用
+     */
+    @Override
+    public void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) {
+        try {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    private final String path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+
+    /**
+     * 已经写出过文本的标识符编号
+     */
+    private final BitSet loggedSymbols = new BitSet();
+
+    static final int MAGIC = 0x5045564C;
+    static final int VERSION = 1;
+    static final int SHIFT = 0;
+    static final int REDUCE = 1;
+    static final int ACCEPT = 2;
+
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final int BUFFER_CAPACITY = 1 << 16;
+}
@@ -0,0 +1,203 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.BinaryTableFile;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 重放 {@link ParseEventLog} 写出的事件日志, 按原来的顺序通知各观察者, 而不必重新进行词法与语法分析
+ * <br>
+ * 用法与 {@link SyntaxAnalyzer} 相同: 注册观察者或语义动作, 加载日志, 然后 {@link #run()}. 日志中的标识符在给定的符号表中重新驻留,
+ * 重放出的词法单元带有新的符号编号. 状态由 {@link Status#create(int)} 构造, 不带 action/goto 信息;
+ * 产生式取自 {@link GrammarInfo}, 日志头中的校验和保证了它与写入日志时的文法相同.
+ * <br>
+ * 日志中已经包含了完整的规约序列, 所以各观察者都会收到单产生式的规约.
+ */
+public final class ParseEventReplay {
+    /**
+     * @param symbolTable 重放出的标识符驻留到的符号表
+     */
+    public ParseEventReplay(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (production.index() >= productions.length) {
+                productions = Arrays.copyOf(productions, production.index() + 1);
+            }
+            productions[production.index()] = production;
+        }
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    /**
+     * 注册一组语义动作, 同 {@link SyntaxAnalyzer#registerSemanticActions(SemanticActions)}
+     *
+     * @param actions 语义动作
+     */
+    public void registerSemanticActions(SemanticActions actions) {
+        if (attributeStack == null) {
+            attributeStack = new AttributeStack(index -> productions[index]);
+            registerObserver(attributeStack);
+        }
+        actions.setSymbolTable(symbolTable);
+        attributeStack.attach(actions);
+    }
+
+    /**
+     * 加载事件日志
+     *
+     * @param path 日志文件路径
+     */
+    public void loadLog(String path) {
+        final var log = FileUtils.mapFile(path);
+        if (log.remaining() < HEADER_BYTES || log.getInt() != ParseEventLog.MAGIC) {
+            throw new RuntimeException("Not a parse event log: " + path);
+        }
+        if (log.getInt() != ParseEventLog.VERSION) {
+            throw new RuntimeException("Unsupported parse event log version: " + path);
+        }
+        if (log.getLong() != BinaryTableFile.checksum()) {
+            throw new RuntimeException("Parse event log %s was written for a different grammar".formatted(path));
+        }
+        this.path = path;
+        this.log = log;
+    }
+
+    public void run() {
+        final var shiftHandlers = new HashMap<TokenKind, ActionObserver[]>();
+        final var reduceHandlers = new ActionObserver[productions.length][];
+        for (final var production : productions) {
+            if (production != null) {
+                reduceHandlers[production.index()] = observers.stream()
+                    .filter(observer -> observer.observesReduce(production))
+                    .toArray(ActionObserver[]::new);
+            }
+        }
+
+        while (log.hasRemaining()) {
+            final var header = getVarint();
+            final var status = statusOf(header >>> 2);
+            switch (header & 0b11) {
+                case ParseEventLog.SHIFT -> {
+                    final var token = readToken();
+                    final var handlers = shiftHandlers.computeIfAbsent(token.getKind(), kind -> observers.stream()
+                        .filter(observer -> observer.observesShift(kind))
+                        .toArray(ActionObserver[]::new));
+                    for (final var listener : handlers) {
+                        listener.whenShift(status, token);
+                    }
+                }
+                case ParseEventLog.REDUCE -> {
+                    final var index = getVarint();
+                    if (index >= productions.length || productions[index] == null) {
+                        throw new RuntimeException("Unknown production %d in %s".formatted(index, path));
+                    }
+                    for (final var listener : reduceHandlers[index]) {
+                        listener.whenReduce(status, productions[index]);
+                    }
+                }
+                case ParseEventLog.ACCEPT -> {
+                    for (final var listener : observers) {
+                        listener.whenAccept(status);
+                    }
+                    return;
+                }
+                default -> throw new RuntimeException("Corrupted parse event log: " + path);
+            }
+        }
+        throw new RuntimeException("Parse event log %s ends before accept".formatted(path));
+    }
+
+    private Token readToken() {
+        final var kind = TokenKind.fromCode(getVarint() - 1);
+        final var loggedSymbol = getVarint() - 1;
+        if (loggedSymbol == Token.NO_SYMBOL) {
+            final var text = getText();
+            return text.isEmpty() ? Token.simple(kind) : Token.normal(kind, text);
+        }
+
+        if (loggedSymbol >= symbols.length) {
+            symbols = Arrays.copyOf(symbols, Math.max(loggedSymbol + 1, symbols.length * 2));
+        }
+        final var known = symbols[loggedSymbol];
+        if (known != null) {
+            return Token.identifier(kind, known.getText(), known.getSymbolId());
+        }
+        final var text = getText();
+        final var token = Token.identifier(kind, text, symbolTable.intern(text));
+        symbols[loggedSymbol] = token;
+        return token;
+    }
+
+    private String getText() {
+        final var bytes = new byte[getVarint()];
+        log.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int getVarint() {
+        var value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            final var b = log.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new RuntimeException("Corrupted varint in " + path);
+    }
+
+    private Status statusOf(int index) {
+        if (index >= statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(index + 1, statuses.length * 2));
+        }
+        if (statuses[index] == null) {
+            statuses[index] = Status.create(index);
+        }
+        return statuses[index];
+    }
+
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private AttributeStack attributeStack;
+
+    /**
+     * 以产生式编号索引的产生式
+     */
+    private Production[] productions = new Production[0];
+
+    /**
+     * 以状态编号索引, 已经构造过的状态
+     */
+    private Status[] statuses = new Status[0];
+
+    /**
+     * 以日志中的符号编号索引, 已经重放过的标识符
+     */
+    private Token[] symbols = new Token[0];
+
+    private String path;
+    private ByteBuffer log;
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES;
+}
@@ -1,6 +1,7 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -43,6 +44,18 @@ public class ProductionCollector implements ActionObserver {
         // do nothing
     }
 
+    @Override
+    public boolean observesShift(TokenKind kind) {
+        // 只记录规约, 不需要接收移入
+        return false;
+    }
+
+    @Override
+    public boolean isOrderDependent() {
+        // 只向自己的列表中追加产生式
+        return false;
+    }
+
     @Override
     public void whenAccept(Status currentStatus) {
         // 当接受时, 记录下对起始产生式的规约
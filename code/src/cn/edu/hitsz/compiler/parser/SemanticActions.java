@@ -0,0 +1,39 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 一组建立在共享属性栈上的语义动作, 如语义分析和 IR 生成
+ * <br>
+ * 与 {@link ActionObserver} 不同, 实现此接口的类不需要自己维护栈, 而是通过
+ * {@link SyntaxAnalyzer#registerSemanticActions(SemanticActions)} 为自己关心的产生式注册语义动作,
+ * 由 {@link AttributeStack} 在规约时取出产生式体各符号的属性交给它们.
+ *
+ * @see AttributeStack
+ */
+public interface SemanticActions {
+    /**
+     * 向属性栈注册语义动作
+     *
+     * @param attributes 属性栈
+     */
+    void registerActions(AttributeStack attributes);
+
+    /**
+     * 在注册语义动作之前由驱动程序调用, 实现此接口的类可以自行决定是否存储这个符号表
+     *
+     * @param table 符号表
+     */
+    void setSymbolTable(SymbolTable table);
+
+    /**
+     * 各组语义动作共用一个属性栈, 只要其中一组依赖先后顺序, 属性栈就在驱动程序的线程上执行 (见 {@link ActionObserver#isOrderDependent()}).
+     * 语义动作通常会读写符号表等共享的数据 (如 {@link SemanticAnalyzer} 在规约时设置变量的类型), 所以默认依赖顺序;
+     * 只读写属性栈与自身状态的语义动作可以返回 false.
+     *
+     * @return 是否必须在驱动程序的线程上与其它观察者按顺序执行, 默认为 true
+     */
+    default boolean isOrderDependent() {
+        return true;
+    }
+}
@@ -1,15 +1,19 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.lexer.TokenPositions;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
 import cn.edu.hitsz.compiler.parser.table.LRTable;
-import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
 
 //TODO: 实验二: 实现 LR 语法分析驱动程序
 
@@ -25,6 +29,36 @@ public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
 
+    /**
+     * 接受时需要通知的观察者
+     */
+    private ActionObserver[] acceptHandlers;
+
+    /**
+     * 以词法单元类型的码点 + 1 索引, 移入该类型的词法单元时需要通知的观察者, 见 {@link ActionObserver#observesShift(TokenKind)}
+     */
+    private ActionObserver[][] shiftHandlers;
+
+    /**
+     * 以产生式编号索引, 规约该产生式时需要通知的观察者, 见 {@link ActionObserver#observesReduce(Production)}
+     */
+    private ActionObserver[][] reduceHandlers;
+
+    /**
+     * 以产生式编号索引, 需要接收被跳过的该产生式规约的观察者, 见 {@link ActionObserver#wantsUnitReductions()}
+     */
+    private ActionObserver[][] unitReductionHandlers;
+
+    /**
+     * 是否在其它线程上通知不依赖先后顺序的观察者
+     */
+    private boolean asyncObservers = false;
+
+    /**
+     * 各组语义动作共用的属性栈, 在第一次注册语义动作时创建
+     */
+    private AttributeStack attributeStack;
+
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
@@ -40,6 +74,30 @@ public class SyntaxAnalyzer {
         observer.setSymbolTable(symbolTable);
     }
 
+    /**
+     * 开启异步模式: 不依赖先后顺序的观察者 (见 {@link ActionObserver#isOrderDependent()}) 不再在分析过程中被直接调用,
+     * 而是在各自的线程上读取驱动程序发布的事件流, 使分析与语义动作可以在多个核心上重叠执行. 其它观察者仍按顺序同步执行
+     */
+    public void enableAsyncObservers() {
+        this.asyncObservers = true;
+    }
+
+    /**
+     * 注册一组语义动作. 所有语义动作共用同一个属性栈, 属性栈作为一个观察者按注册的先后与其它观察者一同被通知
+     * <br>
+     * 多组语义动作注册在同一条产生式上时按注册的先后依次执行, 见 {@link AttributeStack#register(int, AttributeStack.SemanticAction)}
+     *
+     * @param actions 语义动作
+     */
+    public void registerSemanticActions(SemanticActions actions) {
+        if (attributeStack == null) {
+            attributeStack = new AttributeStack(production -> this.table.getProduction(production));
+            registerObserver(attributeStack);
+        }
+        actions.setSymbolTable(symbolTable);
+        attributeStack.attach(actions);
+    }
+
     /**
      * 在执行 shift 动作时通知各个观察者
      *
@@ -47,7 +105,7 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
-        for (final var listener : observers) {
+        for (final var listener : shiftHandlers[currentToken.getKind().getCode() + 1]) {
             listener.whenShift(currentStatus, currentToken);
         }
     }
@@ -59,7 +117,7 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
-        for (final var listener : observers) {
+        for (final var listener : reduceHandlers[production.index()]) {
             listener.whenReduce(currentStatus, production);
         }
     }
@@ -70,7 +128,7 @@ public class SyntaxAnalyzer {
      * @param currentStatus 当前状态
      */
     public void callWhenInAccept(Status currentStatus) {
-        for (final var listener : observers) {
+        for (final var listener : acceptHandlers) {
             listener.whenAccept(currentStatus);
         }
     }
@@ -81,13 +139,18 @@ public class SyntaxAnalyzer {
         // 需要注意的是, 在实现驱动程序的过程中, 你会需要面对只读取一个 token 而不能消耗它的情况,
         // 在自行设计的时候请加以考虑此种情况
         // throw new NotImplementedException();
-        Stack<Token> assistStack = new Stack<>();
-        for (Token token : tokens) {
-            assistStack.push(token);
-        }
-        while (!assistStack.empty()) {
-            this.inputBuffer.push(assistStack.pop());
-        }
+        // 只保存迭代器, 语法分析时每次按需拉取一个 token, 当前 token 即为 lookahead
+        this.inputTokens = tokens.iterator();
+        this.tokenOrdinal = -1;
+    }
+
+    /**
+     * 加载各词法单元在源程序中的位置, 用于在出错时报告位置. 可以不加载, 此时只报告出错词法单元的序号
+     *
+     * @param positions 以词法单元序号索引的位置信息
+     */
+    public void loadPositions(TokenPositions positions) {
+        this.positions = positions;
     }
 
     public void loadLRTable(LRTable table) {
@@ -95,6 +158,16 @@ public class SyntaxAnalyzer {
         // 你可以自行选择要如何使用该表格:
         // 是直接对 LRTable 调用 getAction/getGoto, 抑或是直接将 initStatus 存起来使用
         // throw new NotImplementedException();
+        // 编译为整数数组形式的分析表, 使分析过程中查表只需数组访问
+        this.table = CompiledLRTable.compile(table);
+    }
+
+    /**
+     * 直接加载整数形式的分析表, 如压缩后的 {@link cn.edu.hitsz.compiler.parser.table.CompressedLRTable}
+     *
+     * @param table 分析表
+     */
+    public void loadParseTable(ParseTable table) {
         this.table = table;
     }
 
@@ -104,39 +177,79 @@ public class SyntaxAnalyzer {
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
         // throw new NotImplementedException();
-        symbolStack.push(new Symbol(Token.eof()));
-        statusStack.push(this.table.getInit());
-        while (!this.inputBuffer.empty()) {
-            var currentStatus = statusStack.peek();
-            var currentToken = inputBuffer.peek();
-            var action = this.table.getAction(currentStatus, currentToken);
+        // 状态栈只保存状态编号, 符号本身不需要入栈: 观察者各自维护自己需要的信息, 语义动作的属性由属性栈维护
+        final var inlineObservers = asyncObservers
+            ? observers.stream().filter(ActionObserver::isOrderDependent).toList()
+            : observers;
+        buildDispatchTables(inlineObservers);
+        if (inlineObservers.size() == observers.size()) {
+            parse(null);
+            return;
+        }
+
+        // 其余观察者在各自的线程上读取事件流, 分析结束后等待它们处理完毕
+        final var pipeline = new ObserverPipeline(this.table,
+            observers.stream().filter(observer -> !observer.isOrderDependent()).toList(), PIPELINE_CAPACITY,
+            this::describePosition);
+        pipeline.start();
+        try {
+            parse(pipeline);
+        } finally {
+            pipeline.close();
+        }
+        pipeline.rethrowFailure();
+    }
+
+    /**
+     * 执行分析, 在驱动程序的线程上通知观察者, 并把事件发布到流水线上
+     *
+     * @param pipeline 异步通知观察者的流水线, 不使用时为 null
+     */
+    private void parse(ObserverPipeline pipeline) {
+        stateTop = 0;
+        stateStack[0] = this.table.getInitState();
+        var currentToken = nextToken();
+        while (currentToken != null) {
+            final var currentState = stateStack[stateTop];
+            final var currentStatus = this.table.getStatus(currentState);
+            final var action = this.table.getAction(currentState, currentToken.getKind().getCode());
             boolean isAccept = false;
-            switch (action.getKind()) {
-                case Shift -> {
+            switch (ParseTable.kindOf(action)) {
+                case ParseTable.SHIFT -> {
                     callWhenInShift(currentStatus, currentToken);
-                    final var shiftTo = action.getStatus();
-                    symbolStack.push(new Symbol(inputBuffer.pop()));
-                    statusStack.push(shiftTo);
+                    if (pipeline != null) {
+                        pipeline.publishShift(currentState, tokenOrdinal, currentToken);
+                    }
+                    pushState(ParseTable.targetOf(action));
+                    currentToken = nextToken();
                 }
-                case Reduce -> {
-                    final var production = action.getProduction();
+                case ParseTable.REDUCE -> {
+                    final var productionIndex = ParseTable.targetOf(action);
+                    final var production = this.table.getProduction(productionIndex);
                     callWhenInReduce(currentStatus, production);
-                    int num = production.body().size();
-                    while (num > 0) {
-                        symbolStack.pop();
-                        statusStack.pop();
-                        num--;
+                    if (pipeline != null) {
+                        pipeline.publishReduce(currentState, productionIndex, tokenOrdinal);
+                    }
+                    stateTop -= this.table.getProductionLength(productionIndex);
+                    final var exposedState = stateStack[stateTop];
+                    final var shiftTo = this.table.getGoto(exposedState, productionIndex);
+                    if (shiftTo == ParseTable.NO_GOTO) {
+                        throw new RuntimeException("Syntax analysis error at %s: no goto on %s".formatted(
+                            describePosition(tokenOrdinal), production.head()));
                     }
-                    symbolStack.push(new Symbol(production.head()));
-                    var shiftTo = this.table.getGoto(statusStack.peek(), production.head());
-                    statusStack.push(shiftTo);
+                    pushState(shiftTo);
+                    replayElidedReductions(this.table.getElidedReductions(exposedState, productionIndex), pipeline);
                 }
-                case Accept -> {
+                case ParseTable.ACCEPT -> {
                     isAccept = true;
                     callWhenInAccept(currentStatus);
+                    if (pipeline != null) {
+                        pipeline.publishAccept(currentState, tokenOrdinal);
+                    }
                 }
-                case Error -> {
-                    throw new RuntimeException("Syntax analysis error!");
+                default -> {
+                    throw new RuntimeException("Syntax analysis error at %s: unexpected %s".formatted(
+                        describePosition(tokenOrdinal), currentToken));
                 }
             }
             if (isAccept) {
@@ -146,56 +259,123 @@ public class SyntaxAnalyzer {
     }
 
     /**
-     * 输入缓冲区
+     * 向需要的观察者补发分析表在 GOTO 中跳过的单产生式规约
+     *
+     * @param elided   依次为 (执行规约时的状态编号, 产生式编号) 对
+     * @param pipeline 异步通知观察者的流水线, 不使用时为 null
      */
-    private final Stack<Token> inputBuffer = new Stack<>();
+    private void replayElidedReductions(int[] elided, ObserverPipeline pipeline) {
+        for (int i = 0; i < elided.length; i += 2) {
+            final var status = this.table.getStatus(elided[i]);
+            final var production = this.table.getProduction(elided[i + 1]);
+            for (final var listener : unitReductionHandlers[elided[i + 1]]) {
+                listener.whenReduce(status, production);
+            }
+            if (pipeline != null) {
+                pipeline.publishElidedReduce(elided[i], elided[i + 1], tokenOrdinal);
+            }
+        }
+    }
 
     /**
-     * 所加载的LR表
+     * 按各观察者关心的词法单元类型与产生式, 预先求出每种移入与规约需要通知的观察者, 分析过程中只需按下标取出
+     *
+     * @param observers 在驱动程序的线程上通知的观察者
      */
-    private LRTable table;
+    private void buildDispatchTables(List<ActionObserver> observers) {
+        acceptHandlers = observers.toArray(ActionObserver[]::new);
+
+        final var terminals = this.table.getTerminals();
+        final var codeBound = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1) + 2;
+        shiftHandlers = new ActionObserver[codeBound][];
+        Arrays.fill(shiftHandlers, NO_HANDLERS);
+        for (final var kind : terminals) {
+            shiftHandlers[kind.getCode() + 1] = observers.stream()
+                .filter(observer -> observer.observesShift(kind))
+                .toArray(ActionObserver[]::new);
+        }
+
+        final var productionCount = this.table.getProductionCount();
+        reduceHandlers = new ActionObserver[productionCount][];
+        unitReductionHandlers = new ActionObserver[productionCount][];
+        for (int index = 0; index < productionCount; index++) {
+            final var production = this.table.getProduction(index);
+            if (production == null) {
+                reduceHandlers[index] = NO_HANDLERS;
+                unitReductionHandlers[index] = NO_HANDLERS;
+                continue;
+            }
+            reduceHandlers[index] = observers.stream()
+                .filter(observer -> observer.observesReduce(production))
+                .toArray(ActionObserver[]::new);
+            unitReductionHandlers[index] = Arrays.stream(reduceHandlers[index])
+                .filter(ActionObserver::wantsUnitReductions)
+                .toArray(ActionObserver[]::new);
+        }
+    }
 
     /**
-     * 符号栈
+     * 将状态压入状态栈, 栈满时扩容
+     *
+     * @param state 状态编号
      */
-    private final Stack<Symbol> symbolStack = new Stack<>();
+    private void pushState(int state) {
+        stateTop += 1;
+        if (stateTop == stateStack.length) {
+            stateStack = Arrays.copyOf(stateStack, stateStack.length * 2);
+        }
+        stateStack[stateTop] = state;
+    }
 
     /**
-     * 状态栈
+     * @return 输入中的下一个 token, 若输入已经耗尽则返回 null
      */
-    private final Stack<Status> statusStack = new Stack<>();
-}
-
-class Symbol {
-    private final Token token;
-    private final NonTerminal nonTerminal;
-
-    private Symbol(Token token, NonTerminal nonTerminal) {
-        this.token = token;
-        this.nonTerminal = nonTerminal;
+    private Token nextToken() {
+        if (!inputTokens.hasNext()) {
+            return null;
+        }
+        tokenOrdinal += 1;
+        return inputTokens.next();
     }
 
-    public Symbol(Token token) {
-        this(token, null);
+    /**
+     * @param ordinal 词法单元的序号
+     * @return 该词法单元位置的描述
+     */
+    private String describePosition(int ordinal) {
+        if (positions == null) {
+            return "token #%d".formatted(ordinal);
+        }
+        return "token #%d (%s)".formatted(ordinal, positions.describe(ordinal));
     }
 
-    public Symbol(NonTerminal nonTerminal) {
-        this(null, nonTerminal);
-    }
+    /**
+     * 输入的词法单元流
+     */
+    private Iterator<Token> inputTokens;
 
-    public boolean isToken() {
-        return this.token != null;
-    }
+    /**
+     * 当前词法单元的序号
+     */
+    private int tokenOrdinal = -1;
 
-    public boolean isNonTerminal() {
-        return this.nonTerminal != null;
-    }
+    /**
+     * 各词法单元的位置, 可能为 null
+     */
+    private TokenPositions positions;
 
-    public Token getToken() {
-        return this.token;
-    }
+    /**
+     * 所加载的LR表, 已编译为整数数组的形式
+     */
+    private ParseTable table;
 
-    public NonTerminal getNonTerminal() {
-        return this.nonTerminal;
-    }
-}
\ No newline at end of file
+    /**
+     * 状态栈, 存放状态编号, stateTop 为栈顶的下标
+     */
+    private int[] stateStack = new int[INITIAL_STACK_CAPACITY];
+    private int stateTop = -1;
+
+    private static final int INITIAL_STACK_CAPACITY = 64;
+    private static final ActionObserver[] NO_HANDLERS = new ActionObserver[0];
+    private static final int PIPELINE_CAPACITY = 1 << 12;
+}
@@ -0,0 +1,192 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+
+import java.util.Arrays;
+
+/**
+ * 以数组形式存储的语法树, 由 {@link SyntaxTreeBuilder} 构造
+ * <br>
+ * 节点以从 0 开始的整数编号表示, 各字段分别存放在以节点编号索引的数组中, 而不是每个节点一个对象:
+ * <ul>
+ *     <li>kind: 内部节点为规约出它的产生式编号, 叶节点为 {@link #TOKEN}</li>
+ *     <li>firstChild / nextSibling: 第一个子节点与下一个兄弟节点, 没有时为 {@link #NONE}</li>
+ *     <li>tokenRef: 叶节点对应的词法单元在 tokens 中的下标, 内部节点为 {@link #NONE}</li>
+ * </ul>
+ * 子节点的编号总是小于父节点, 所以按编号从小到大即是一个后序遍历; 需要先序遍历或区分进入与离开时使用 {@link #accept(Visitor)}.
+ */
+public final class SyntaxTree {
+    /**
+     * 语法树的访问者
+     */
+    public interface Visitor {
+        /**
+         * 进入一个节点, 此时其子节点都还没有被访问
+         *
+         * @param tree 语法树
+         * @param node 节点编号
+         * @return 是否访问该节点的子节点
+         */
+        default boolean enter(SyntaxTree tree, int node) {
+            return true;
+        }
+
+        /**
+         * 离开一个节点, 此时其子节点都已经被访问 (或被跳过)
+         *
+         * @param tree 语法树
+         * @param node 节点编号
+         */
+        default void exit(SyntaxTree tree, int node) {
+        }
+    }
+
+    /**
+     * @return 根节点的编号
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * @return 节点数
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 是否为叶节点 (词法单元)
+     */
+    public boolean isToken(int node) {
+        return kind[checked(node)] == TOKEN;
+    }
+
+    /**
+     * @param node 内部节点的编号
+     * @return 规约出该节点的产生式
+     */
+    public Production getProduction(int node) {
+        if (isToken(node)) {
+            throw new RuntimeException("Node %d is a token, not a production".formatted(node));
+        }
+        return productions[kind[node]];
+    }
+
+    /**
+     * @param node 叶节点的编号
+     * @return 该节点对应的词法单元
+     */
+    public Token getToken(int node) {
+        if (!isToken(node)) {
+            throw new RuntimeException("Node %d is a production, not a token".formatted(node));
+        }
+        return tokens[tokenRef[node]];
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 第一个子节点的编号, 没有时为 {@link #NONE}
+     */
+    public int getFirstChild(int node) {
+        return firstChild[checked(node)];
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 下一个兄弟节点的编号, 没有时为 {@link #NONE}
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[checked(node)];
+    }
+
+    /**
+     * 从根节点开始深度优先地访问整棵树. 使用显式的栈而不是递归, 很深的树 (如右递归的语句列表) 也不会栈溢出
+     *
+     * @param visitor 访问者
+     */
+    public void accept(Visitor visitor) {
+        // 栈中的非负数为待进入的节点, 负数 ~node 为待离开的节点
+        var stack = new int[INITIAL_STACK_CAPACITY];
+        var top = 0;
+        stack[0] = root;
+        while (top >= 0) {
+            final var entry = stack[top--];
+            if (entry < 0) {
+                visitor.exit(this, ~entry);
+                continue;
+            }
+
+            final var visitChildren = visitor.enter(this, entry);
+            var childCount = 0;
+            if (visitChildren) {
+                for (int child = firstChild[entry]; child != NONE; child = nextSibling[child]) {
+                    childCount++;
+                }
+            }
+            if (top + 2 + childCount >= stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 2 + childCount + 1));
+            }
+            stack[++top] = ~entry;
+            if (visitChildren) {
+                // 子节点逆序入栈, 使它们按从左到右的顺序被访问
+                var slot = top + childCount;
+                for (int child = firstChild[entry]; child != NONE; child = nextSibling[child]) {
+                    stack[slot--] = child;
+                }
+                top += childCount;
+            }
+        }
+    }
+
+    SyntaxTree(int root, int nodeCount, int[] kind, int[] firstChild, int[] nextSibling, int[] tokenRef,
+               Production[] productions, Token[] tokens) {
+        this.root = root;
+        this.nodeCount = nodeCount;
+        this.kind = kind;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.tokenRef = tokenRef;
+        this.productions = productions;
+        this.tokens = tokens;
+    }
+
+    private int checked(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new RuntimeException("No such node: " + node);
+        }
+        return node;
+    }
+
+    private final int root;
+    private final int nodeCount;
+
+    private final int[] kind;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] tokenRef;
+
+    /**
+     * 以产生式编号索引的产生式
+     */
+    private final Production[] productions;
+
+    /**
+     * 以 tokenRef 索引的词法单元
+     */
+    private final Token[] tokens;
+
+    /**
+     * 叶节点的 kind
+     */
+    public static final int TOKEN = -1;
+
+    /**
+     * 表示没有对应的节点或词法单元
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_STACK_CAPACITY = 64;
+}
@@ -0,0 +1,173 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * 在语法分析过程中构造语法树的观察者
+ * <br>
+ * 节点分配在几个按需扩容的整数数组中 (见 {@link SyntaxTree}): 移入时新建一个叶节点, 规约时新建一个内部节点,
+ * 并把栈顶对应产生式体的节点依次链接为它的子节点. 接受时以起始产生式为根, 将数组按实际大小复制一份得到整棵树,
+ * 随后清空构造状态, 因此同一个构造器可以用于多次分析, 之前得到的树不受影响.
+ * <br>
+ * 构造抽象语法树时, 单产生式 (形如 A -> B) 不产生新的节点, 子节点直接代替父节点留在栈中. 此时也不需要接收分析表跳过的单产生式规约.
+ */
+public class SyntaxTreeBuilder implements ActionObserver {
+    /**
+     * @param beginProduction 起始产生式, 接受时以它为根节点
+     * @param abstractTree    是否省略单产生式的节点
+     */
+    public SyntaxTreeBuilder(Production beginProduction, boolean abstractTree) {
+        this.beginProduction = beginProduction;
+        this.abstractTree = abstractTree;
+    }
+
+    /**
+     * @return 最近一次接受时构造出的语法树
+     * @throws RuntimeException 分析尚未结束
+     */
+    public SyntaxTree getTree() {
+        if (tree == null) {
+            throw new RuntimeException("Syntax tree is not available before accept");
+        }
+        return tree;
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        if (tokenCount == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        tokens[tokenCount] = currentToken;
+        pushNode(newNode(SyntaxTree.TOKEN, tokenCount++));
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        final var length = production.body().size();
+        if (abstractTree && length == 1 && production.body().get(0) instanceof NonTerminal) {
+            return;
+        }
+        pushNode(reduce(production, length));
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // 接受时栈中剩下的即为起始产生式的产生式体
+        final var root = reduce(beginProduction, stackTop + 1);
+        tree = new SyntaxTree(root, nodeCount,
+            Arrays.copyOf(kind, nodeCount), Arrays.copyOf(firstChild, nodeCount),
+            Arrays.copyOf(nextSibling, nodeCount), Arrays.copyOf(tokenRef, nodeCount),
+            productions.clone(), Arrays.copyOf(tokens, tokenCount));
+
+        // 树已持有自己的数组, 下一次分析从头复用这些数组
+        Arrays.fill(tokens, 0, tokenCount, null);
+        nodeCount = 0;
+        tokenCount = 0;
+        stackTop = -1;
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 叶节点直接引用词法单元, 不需要符号表
+    }
+
+    @Override
+    public boolean wantsUnitReductions() {
+        return !abstractTree;
+    }
+
+    @Override
+    public boolean isOrderDependent() {
+        return false;
+    }
+
+    /**
+     * 弹出栈顶的 length 个节点, 作为新的内部节点的子节点
+     *
+     * @return 新节点的编号
+     */
+    private int reduce(Production production, int length) {
+        final var index = production.index();
+        if (index >= productions.length) {
+            productions = Arrays.copyOf(productions, Math.max(index + 1, productions.length * 2));
+        }
+        productions[index] = production;
+
+        final var node = newNode(index, SyntaxTree.NONE);
+        final var base = stackTop - length + 1;
+        if (length > 0) {
+            firstChild[node] = stack[base];
+            for (int i = base; i < stackTop; i++) {
+                nextSibling[stack[i]] = stack[i + 1];
+            }
+        }
+        stackTop = base - 1;
+        return node;
+    }
+
+    private int newNode(int nodeKind, int token) {
+        if (nodeCount == kind.length) {
+            final var capacity = kind.length * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            tokenRef = Arrays.copyOf(tokenRef, capacity);
+        }
+        final var node = nodeCount++;
+        kind[node] = nodeKind;
+        firstChild[node] = SyntaxTree.NONE;
+        nextSibling[node] = SyntaxTree.NONE;
+        tokenRef[node] = token;
+        return node;
+    }
+
+    private void pushNode(int node) {
+        stackTop += 1;
+        if (stackTop == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackTop] = node;
+    }
+
+    private final Production beginProduction;
+    private final boolean abstractTree;
+
+    /**
+     * 各节点的字段, 见 {@link SyntaxTree}
+     */
+    private int[] kind = new int[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private int[] tokenRef = new int[INITIAL_CAPACITY];
+    private int nodeCount = 0;
+
+    /**
+     * 移入的词法单元, 以叶节点的 tokenRef 索引
+     */
+    private Token[] tokens = new Token[INITIAL_CAPACITY];
+    private int tokenCount = 0;
+
+    /**
+     * 以产生式编号索引, 树中出现过的产生式
+     */
+    private Production[] productions = new Production[0];
+
+    /**
+     * 与分析栈对应的节点栈, stackTop 为栈顶的下标
+     */
+    private int[] stack = new int[INITIAL_CAPACITY];
+    private int stackTop = -1;
+
+    /**
+     * 最近一次接受时构造出的语法树
+     */
+    private SyntaxTree tree = null;
+
+    private static final int INITIAL_CAPACITY = 64;
+}
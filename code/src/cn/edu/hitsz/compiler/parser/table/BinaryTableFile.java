@@ -0,0 +1,211 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * 预编译的二进制分析表文件
+ * <br>
+ * 从 CSV 读取分析表需要逐格切分字符串, 并以产生式的文本查表得到每个规约动作的产生式. 此类把 {@link CompiledLRTable}
+ * 原样写成二进制文件, 之后的运行只需将文件映射到内存并批量读出几个 int 数组.
+ * <br>
+ * 加载时先以普通读取检查文件头, 只有校验和匹配的文件才会被映射; 表的内容全部复制到堆上的数组中, 返回的分析表不引用映射.
+ * 过期的文件不会被映射, 因此重新生成时写回同一路径不会与仍然存活的映射冲突 (在 Windows 上, 被映射的文件无法被替换).
+ * <br>
+ * 文件格式 (大端序):
+ * <pre>
+ * int   magic ('LRTB')
+ * int   version
+ * long  checksum             生成该表时输入文件的校验和, 见 {@link #checksum(String...)}
+ * int   stateCount
+ * int   terminalCount,       terminalCount 个 int: 各列终结符的码点
+ * int   nonTerminalCount,    nonTerminalCount 个 (short 长度 + UTF-8 字节): 各列非终结符的名字
+ * int   productionSlots,     productionSlots 个 int 产生式头, productionSlots 个 int 产生式体长度
+ * stateCount * terminalCount 个 int:    ACTION 表
+ * stateCount * nonTerminalCount 个 int: GOTO 表
+ * </pre>
+ * 产生式对象在加载时取自 {@link GrammarInfo}, 校验和保证了它与写入时的文法相同.
+ * 加载出的状态由 {@link Status#create(int)} 构造, 不带 action/goto 信息, 查表应当通过分析表本身进行.
+ */
+public final class BinaryTableFile {
+    private static final int MAGIC = 0x4C525442;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * 计算文法文件, 码点文件以及其它输入文件的校验和, 任何一个文件的改动都会使以前写出的表失效
+     * <br>
+     * 校验和只取各文件的大小与最后修改时间, 不读取文件内容, 使每次启动的开销与输入文件的大小无关.
+     * 代价是只被 touch 过或重新检出的文件也会使表失效, 多生成一次; 反过来, 内容改变而大小与修改时间都不变的情况不会被发现.
+     *
+     * @param inputs 生成分析表所用的其它输入文件
+     * @return 校验和
+     */
+    public static long checksum(String... inputs) {
+        final var crc = new CRC32();
+        final var paths = new ArrayList<String>();
+        paths.add(FilePathConfig.GRAMMAR_PATH);
+        paths.add(FilePathConfig.CODING_MAP_PATH);
+        paths.addAll(List.of(inputs));
+
+        final var buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (final var path : paths) {
+            buffer.clear().putLong(FileUtils.size(path)).putLong(FileUtils.lastModified(path));
+            crc.update(buffer.array());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 将分析表写入文件
+     *
+     * @param table    分析表
+     * @param checksum 生成该表时输入文件的校验和
+     * @param path     文件路径
+     */
+    public static void write(CompiledLRTable table, long checksum, String path) {
+        if (table.getElidedReductionCells() != null) {
+            throw new RuntimeException("Tables with bypassed unit productions can not be written, bypass them after loading");
+        }
+
+        final var stateCount = table.getStateCount();
+        final var terminals = table.getTerminals();
+        final var nonTerminalNames = table.getNonTerminals().stream()
+            .map(nonTerminal -> nonTerminal.getTermName().getBytes(StandardCharsets.UTF_8)).toList();
+        final var heads = table.getProductionHeads();
+        final var lengths = table.getProductionLengths();
+
+        var size = HEADER_SIZE;
+        size += Integer.BYTES * (4 + terminals.size() + 2 * heads.length);
+        size += nonTerminalNames.stream().mapToInt(name -> Short.BYTES + name.length).sum();
+        size += Integer.BYTES * stateCount * (terminals.size() + nonTerminalNames.size());
+
+        final var buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum);
+        buffer.putInt(stateCount);
+
+        buffer.putInt(terminals.size());
+        terminals.forEach(terminal -> buffer.putInt(terminal.getCode()));
+
+        buffer.putInt(nonTerminalNames.size());
+        for (final var name : nonTerminalNames) {
+            buffer.putShort((short) name.length).put(name);
+        }
+
+        buffer.putInt(heads.length);
+        for (final var head : heads) {
+            buffer.putInt(head);
+        }
+        for (final var length : lengths) {
+            buffer.putInt(length);
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            for (int column = 0; column < terminals.size(); column++) {
+                buffer.putInt(table.getActionAt(state, column));
+            }
+        }
+        for (int state = 0; state < stateCount; state++) {
+            for (int column = 0; column < nonTerminalNames.size(); column++) {
+                buffer.putInt(table.getGotoAt(state, column));
+            }
+        }
+
+        FileUtils.writeBytes(path, buffer.array());
+    }
+
+    /**
+     * 以内存映射的方式加载分析表, 文件头不匹配时不会映射文件
+     *
+     * @param path     文件路径
+     * @param checksum 当前输入文件的校验和
+     * @return 加载出的分析表; 文件不存在, 已经过期或格式不对时为空
+     */
+    public static Optional<CompiledLRTable> load(String path, long checksum) {
+        if (!FileUtils.exists(path)) {
+            return Optional.empty();
+        }
+
+        final var header = FileUtils.readPrefix(path, HEADER_SIZE);
+        if (header.remaining() < HEADER_SIZE
+            || header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != checksum) {
+            return Optional.empty();
+        }
+
+        final var buffer = FileUtils.mapFile(path).position(HEADER_SIZE);
+        try {
+
+            final var stateCount = buffer.getInt();
+            final var statuses = new Status[stateCount];
+            for (int i = 0; i < stateCount; i++) {
+                statuses[i] = Status.create(i);
+            }
+
+            final var terminals = new ArrayList<TokenKind>();
+            final var terminalCount = buffer.getInt();
+            for (int i = 0; i < terminalCount; i++) {
+                terminals.add(TokenKind.fromCode(buffer.getInt()));
+            }
+
+            final var nonTerminals = new ArrayList<NonTerminal>();
+            final var nonTerminalCount = buffer.getInt();
+            for (int i = 0; i < nonTerminalCount; i++) {
+                final var name = new byte[buffer.getShort()];
+                buffer.get(name);
+                nonTerminals.add(new NonTerminal(new String(name, StandardCharsets.UTF_8)));
+            }
+
+            final var productionSlots = buffer.getInt();
+            final var heads = readInts(buffer, productionSlots);
+            final var lengths = readInts(buffer, productionSlots);
+            final var productions = new Production[productionSlots];
+            for (final var production : GrammarInfo.getProductionsInOrder()) {
+                productions[production.index()] = production;
+            }
+
+            final var actions = readInts(buffer, stateCount * terminalCount);
+            final var gotos = readInts(buffer, stateCount * nonTerminalCount);
+            return Optional.of(new CompiledLRTable(statuses, terminals, nonTerminals, productions,
+                actions, gotos, heads, lengths));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // 文件被截断或损坏, 视为需要重新生成
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 加载分析表, 若文件不可用则构造一次分析表并写出, 供下一次运行使用
+     *
+     * @param path     文件路径
+     * @param checksum 当前输入文件的校验和
+     * @param builder  构造分析表的方法
+     * @return 分析表
+     */
+    public static CompiledLRTable loadOrBuild(String path, long checksum, Supplier<LRTable> builder) {
+        return load(path, checksum).orElseGet(() -> {
+            final var table = CompiledLRTable.compile(builder.get());
+            write(table, checksum, path);
+            return table;
+        });
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        final var values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private BinaryTableFile() {
+    }
+}
@@ -0,0 +1,73 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 以 long[] 表示的定长位集合的基本操作
+ * <br>
+ * 生成分析表时终结符, 非终结符与项目都被稠密地编号, FIRST/FOLLOW 集合, 向前看集合等都以位集合表示.
+ * 与 {@link java.util.BitSet} 不同, 这里的集合长度在创建时确定, 合并时不需要检查与扩容, 也不会生成额外的对象.
+ */
+final class Bits {
+    /**
+     * @param size 元素个数
+     * @return 能容纳 size 个元素的空集合
+     */
+    static long[] create(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 将 from 并入 into
+     *
+     * @return into 是否因此发生了变化
+     */
+    static boolean or(long[] into, long[] from) {
+        var changed = false;
+        for (int i = 0; i < from.length; i++) {
+            final var merged = into[i] | from[i];
+            if (merged != into[i]) {
+                into[i] = merged;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    static boolean isEmpty(long[] bits) {
+        for (final var word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按从小到大的顺序遍历集合中的元素
+     */
+    static void forEach(long[] bits, IntConsumer action) {
+        for (int i = 0; i < bits.length; i++) {
+            var word = bits[i];
+            while (word != 0) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    private Bits() {
+    }
+}
@@ -0,0 +1,396 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 编译为稠密整数数组的 LR 分析表
+ * <br>
+ * {@link LRTable} 的每次查表都要以 TokenKind/NonTerminal 为键查询 HashMap, 也就要对文法符号的名字求哈希.
+ * 此类把 ACTION 与 GOTO 表展开为两个按行存放的 int 数组, 状态, 终结符, 非终结符与产生式都以整数编号表示:
+ * <ul>
+ *     <li>ACTION 表下标为 {@code state * terminalCount + column}, 其中 column 由词法单元类型的码点经 {@link #getColumn(int)} 得到</li>
+ *     <li>GOTO 表下标为 {@code state * nonTerminalCount + 非终结符编号}, 不存在的转移为 {@link #NO_GOTO}</li>
+ * </ul>
+ * 动作的压缩方式见 {@link ParseTable}.
+ * <br>
+ * 驱动程序只需要进行数组访问, 只有在通知观察者时才通过 {@link #getStatus(int)} 与 {@link #getProduction(int)} 取回对应的对象.
+ */
+public final class CompiledLRTable implements ParseTable {
+    /**
+     * 将 LR 分析表编译为整数数组的形式
+     *
+     * @param table LR 分析表
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable compile(LRTable table) {
+        final var statusList = table.getStatusInIndexOrder();
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+
+        if (statusList.isEmpty() || statusList.get(0).index() != 0) {
+            throw new RuntimeException("The initial status must be status 0");
+        }
+
+        final var statuses = new Status[statusList.size()];
+        for (final var status : statusList) {
+            if (status.index() >= statuses.length || statuses[status.index()] != null) {
+                throw new RuntimeException("Status indices are not dense: " + status.index());
+            }
+            statuses[status.index()] = status;
+        }
+
+        final var productionList = GrammarInfo.getProductionsInOrder();
+        final var productions = new Production[productionList.stream().mapToInt(Production::index).max().orElse(0) + 1];
+        for (final var production : productionList) {
+            productions[production.index()] = production;
+        }
+
+        final var nonTerminalIndex = new HashMap<NonTerminal, Integer>();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            nonTerminalIndex.put(nonTerminals.get(i), i);
+        }
+
+        final var terminalCount = terminals.size();
+        final var nonTerminalCount = nonTerminals.size();
+        final var actions = new int[statuses.length * terminalCount];
+        final var gotos = new int[statuses.length * nonTerminalCount];
+        Arrays.fill(gotos, NO_GOTO);
+
+        for (final var status : statuses) {
+            for (int column = 0; column < terminalCount; column++) {
+                final var action = status.getAction(terminals.get(column));
+                actions[status.index() * terminalCount + column] = switch (action.getKind()) {
+                    case Shift -> ParseTable.pack(SHIFT, action.getStatus().index());
+                    case Reduce -> ParseTable.pack(REDUCE, action.getProduction().index());
+                    case Accept -> ParseTable.pack(ACCEPT, 0);
+                    case Error -> ParseTable.pack(ERROR, 0);
+                };
+            }
+
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var target = status.getGoto(nonTerminals.get(column));
+                gotos[status.index() * nonTerminalCount + column] = target.isError() ? NO_GOTO : target.index();
+            }
+        }
+
+        final var productionHeads = new int[productions.length];
+        final var productionLengths = new int[productions.length];
+        for (final var production : productionList) {
+            final var head = nonTerminalIndex.get(production.head());
+            productionHeads[production.index()] = head == null ? NO_GOTO : head;
+            productionLengths[production.index()] = production.body().size();
+        }
+
+        return new CompiledLRTable(statuses, terminals, nonTerminals, productions,
+            actions, gotos, productionHeads, productionLengths);
+    }
+
+    /**
+     * 直接以各数组构造分析表, 供不经过 {@link LRTable} 的加载方式使用
+     *
+     * @param statuses          以编号索引的状态, 编号必须从 0 开始连续, 0 号为起始状态
+     * @param terminals         ACTION 表各列对应的终结符
+     * @param nonTerminals      GOTO 表各列对应的非终结符
+     * @param productions       以 {@link Production#index()} 索引的产生式, 可以有空缺
+     * @param actions           ACTION 表
+     * @param gotos             GOTO 表
+     * @param productionHeads   以产生式编号索引, 产生式头在 GOTO 表中的列号
+     * @param productionLengths 以产生式编号索引, 产生式体的长度
+     */
+    CompiledLRTable(Status[] statuses, List<TokenKind> terminals, List<NonTerminal> nonTerminals,
+                    Production[] productions, int[] actions, int[] gotos,
+                    int[] productionHeads, int[] productionLengths) {
+        this(statuses, terminals, nonTerminals, productions, actions, gotos, productionHeads, productionLengths, null);
+    }
+
+    private CompiledLRTable(Status[] statuses, List<TokenKind> terminals, List<NonTerminal> nonTerminals,
+                            Production[] productions, int[] actions, int[] gotos,
+                            int[] productionHeads, int[] productionLengths, int[][] elidedReductions) {
+        if (actions.length != statuses.length * terminals.size()
+            || gotos.length != statuses.length * nonTerminals.size()) {
+            throw new RuntimeException("Table size does not match the number of statuses and terms");
+        }
+
+        this.statuses = statuses;
+        this.terminals = List.copyOf(terminals);
+        this.nonTerminals = List.copyOf(nonTerminals);
+        this.productions = productions;
+        this.actions = actions;
+        this.gotos = gotos;
+        this.productionHeads = productionHeads;
+        this.productionLengths = productionLengths;
+        this.elidedReductions = elidedReductions;
+        this.terminalCount = terminals.size();
+        this.nonTerminalCount = nonTerminals.size();
+
+        // 码点到列号的映射, 下标为码点 + 1 (EOF 的码点为 -1)
+        final var maxCode = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        this.columnOfCode = new int[maxCode + 2];
+        Arrays.fill(columnOfCode, -1);
+        for (int column = 0; column < terminals.size(); column++) {
+            columnOfCode[terminals.get(column).getCode() + 1] = column;
+        }
+    }
+
+    /**
+     * @param tokenCode 词法单元类型的码点
+     * @return 该类型在 ACTION 表中的列号; 若文法中没有该终结符则返回 -1
+     */
+    public int getColumn(int tokenCode) {
+        final var index = tokenCode + 1;
+        return index >= 0 && index < columnOfCode.length ? columnOfCode[index] : -1;
+    }
+
+    /**
+     * @param state     状态编号
+     * @param tokenCode 词法单元类型的码点
+     * @return 压缩后的动作
+     */
+    @Override
+    public int getAction(int state, int tokenCode) {
+        final var column = getColumn(tokenCode);
+        return column < 0 ? ERROR : actions[state * terminalCount + column];
+    }
+
+    /**
+     * @param state      状态编号
+     * @param production 产生式编号
+     * @return 规约该产生式后应转移到的状态, 不存在时返回 {@link #NO_GOTO}
+     */
+    @Override
+    public int getGoto(int state, int production) {
+        final var head = productionHeads[production];
+        return head == NO_GOTO ? NO_GOTO : gotos[state * nonTerminalCount + head];
+    }
+
+    @Override
+    public int[] getElidedReductions(int state, int production) {
+        final var head = productionHeads[production];
+        if (elidedReductions == null || head == NO_GOTO) {
+            return NO_ELIDED_REDUCTIONS;
+        }
+
+        final var elided = elidedReductions[state * nonTerminalCount + head];
+        return elided == null ? NO_ELIDED_REDUCTIONS : elided;
+    }
+
+    /**
+     * 跳过单产生式的规约
+     * <br>
+     * 对单产生式 A -> B, 若状态 t = GO(s, B) 中所有的动作都是规约 A -> B (即 t 只含项目 A -> B .), 那么进入 t 之后必然立即规约
+     * A -> B, 弹出 t 并转移到 GO(s, A). 因此可以把 GO(s, B) 直接改为 GO(s, A), 省去一次规约与对各观察者的通知;
+     * 若 GO(s, A) 同样只会规约单产生式, 则继续跳过整条链. 与默认规约一样, 这会使错误在几次规约之后才被发现, 但一定在移入之前.
+     * <br>
+     * 被跳过的规约记录在表中 (见 {@link #getElidedReductions(int, int)}). 这些记录不会写入 {@link BinaryTableFile},
+     * 应当在加载分析表之后再调用此方法.
+     *
+     * @return 跳过单产生式规约后的分析表, 状态与 ACTION 表不变
+     */
+    public CompiledLRTable bypassUnitProductions() {
+        // unitProductionOf[t]: 状态 t 唯一会执行的单产生式规约, 不是这样的状态为 -1
+        final var unitProductionOf = new int[statuses.length];
+        for (int state = 0; state < statuses.length; state++) {
+            unitProductionOf[state] = onlyReduction(state);
+            if (unitProductionOf[state] >= 0 && productionLengths[unitProductionOf[state]] != 1) {
+                unitProductionOf[state] = -1;
+            }
+        }
+
+        final var newGotos = gotos.clone();
+        final var elided = new int[gotos.length][];
+        for (int state = 0; state < statuses.length; state++) {
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var cell = state * nonTerminalCount + column;
+                var target = gotos[cell];
+                var chain = NO_ELIDED_REDUCTIONS;
+                // 链的长度不会超过状态数, 以防文法中存在 A -> B, B -> A 这样的环
+                while (target != NO_GOTO && unitProductionOf[target] >= 0 && chain.length < 2 * statuses.length) {
+                    final var production = unitProductionOf[target];
+                    chain = Arrays.copyOf(chain, chain.length + 2);
+                    chain[chain.length - 2] = target;
+                    chain[chain.length - 1] = production;
+                    target = gotos[state * nonTerminalCount + productionHeads[production]];
+                }
+
+                if (chain.length > 0 && target != NO_GOTO) {
+                    newGotos[cell] = target;
+                    elided[cell] = chain;
+                }
+            }
+        }
+
+        return new CompiledLRTable(statuses, terminals, nonTerminals, productions,
+            actions, newGotos, productionHeads, productionLengths, elided);
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 若该状态没有转移, 且所有非错误的动作都是同一个规约, 则返回该产生式的编号; 否则返回 -1
+     */
+    private int onlyReduction(int state) {
+        for (int column = 0; column < nonTerminalCount; column++) {
+            if (gotos[state * nonTerminalCount + column] != NO_GOTO) {
+                return -1;
+            }
+        }
+
+        var production = -1;
+        for (int column = 0; column < terminalCount; column++) {
+            final var action = actions[state * terminalCount + column];
+            if (ParseTable.kindOf(action) == ERROR) {
+                continue;
+            }
+            if (ParseTable.kindOf(action) != REDUCE
+                || (production >= 0 && production != ParseTable.targetOf(action))) {
+                return -1;
+            }
+            production = ParseTable.targetOf(action);
+        }
+        return production;
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式体的长度
+     */
+    @Override
+    public int getProductionLength(int production) {
+        return productionLengths[production];
+    }
+
+    /**
+     * @return 起始状态的编号
+     */
+    @Override
+    public int getInitState() {
+        return 0;
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 对应的状态对象
+     */
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 对应的产生式
+     */
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    /**
+     * @return 状态数
+     */
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    @Override
+    public int getProductionCount() {
+        return productionLengths.length;
+    }
+
+    /**
+     * @return ACTION 表各列对应的终结符
+     */
+    @Override
+    public List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    /**
+     * @return GOTO 表各列对应的非终结符
+     */
+    @Override
+    public List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
+    //==================== 以下供其它形式的分析表读取原始数据 ==============================//
+
+    /**
+     * @param state  状态编号
+     * @param column ACTION 表中的列号
+     * @return 压缩后的动作
+     */
+    int getActionAt(int state, int column) {
+        return actions[state * terminalCount + column];
+    }
+
+    /**
+     * @param state  状态编号
+     * @param column GOTO 表中的列号
+     * @return 转移到的状态, 不存在时为 {@link #NO_GOTO}
+     */
+    int getGotoAt(int state, int column) {
+        return gotos[state * nonTerminalCount + column];
+    }
+
+    Status[] getStatuses() {
+        return statuses;
+    }
+
+    Production[] getProductions() {
+        return productions;
+    }
+
+    int[] getProductionHeads() {
+        return productionHeads;
+    }
+
+    int[] getProductionLengths() {
+        return productionLengths;
+    }
+
+    int[] getColumnOfCode() {
+        return columnOfCode;
+    }
+
+    /**
+     * @return 以 GOTO 表下标索引的被跳过的规约, 格子为 null 表示没有; 未跳过单产生式时整个数组为 null
+     */
+    int[][] getElidedReductionCells() {
+        return elidedReductions;
+    }
+
+    private final Status[] statuses;
+    private final List<TokenKind> terminals;
+    private final List<NonTerminal> nonTerminals;
+    private final Production[] productions;
+
+    /**
+     * ACTION 表与 GOTO 表, 按行存放
+     */
+    private final int[] actions;
+    private final int[] gotos;
+
+    /**
+     * 以产生式编号索引的产生式头 (GOTO 表中的列号) 与产生式体长度
+     */
+    private final int[] productionHeads;
+    private final int[] productionLengths;
+
+    /**
+     * 以 GOTO 表下标索引, 该转移中跳过的单产生式规约, 见 {@link #bypassUnitProductions()}
+     */
+    private final int[][] elidedReductions;
+
+    private final int terminalCount;
+    private final int nonTerminalCount;
+
+    /**
+     * 码点到 ACTION 表列号的映射
+     */
+    private final int[] columnOfCode;
+}
@@ -0,0 +1,402 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 压缩存储的 LR 分析表
+ * <br>
+ * 实际文法的 ACTION/GOTO 表中绝大部分格子都是空的, 此类采用 yacc 式的压缩:
+ * <ul>
+ *     <li>默认规约: 每个状态中出现最多的规约动作作为该状态的默认动作, 不再存入表中; 没有规约动作的状态默认为出错</li>
+ *     <li>行位移 (comb) 压缩: 将各行剩余的非空格子错位叠放进同一个一维数组, 第 i 行放在 base[i] 开始的位置上,
+ *     并在 check 数组的同一位置记下格子所属的行, 以区分真正属于本行的格子与别的行叠放进来的格子</li>
+ *     <li>GOTO 表按非终结符分列压缩, 不设默认转移: check 不匹配即为不存在的转移, 与稠密形式一样返回 {@link #NO_GOTO}</li>
+ *     <li>分析表跳过的单产生式规约与 GOTO 表的格子一一对应, 同样按非终结符分列压缩, 表中存放的是去重后的规约序列的下标</li>
+ * </ul>
+ * 查表仍然是 O(1) 的: {@code check[base[row] + column] == row ? table[base[row] + column] : default[row]}.
+ * <br>
+ * 默认规约会把出错的格子也当作规约, 因此遇到错误的词法单元时可能会先多执行几次规约, 但一定会在移入该词法单元之前报错;
+ * 合法输入的分析过程不受影响.
+ */
+public final class CompressedLRTable implements ParseTable {
+    /**
+     * 压缩稠密形式的分析表
+     *
+     * @param table 稠密形式的分析表
+     * @return 压缩后的分析表
+     */
+    public static CompressedLRTable compress(CompiledLRTable table) {
+        final var stateCount = table.getStateCount();
+        final var terminalCount = table.getTerminals().size();
+        final var nonTerminalCount = table.getNonTerminals().size();
+
+        // ACTION 表: 先求出各状态的默认规约, 剩下的格子按行压缩
+        final var defaultActions = new int[stateCount];
+        final var actionRows = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            final var row = new int[terminalCount];
+            for (int column = 0; column < terminalCount; column++) {
+                row[column] = table.getActionAt(state, column);
+            }
+
+            defaultActions[state] = mostFrequent(row, action -> ParseTable.kindOf(action) == REDUCE, ERROR);
+            for (int column = 0; column < terminalCount; column++) {
+                if (row[column] == defaultActions[state]) {
+                    row[column] = ERROR;
+                }
+            }
+            actionRows[state] = row;
+        }
+        final var actionComb = Comb.pack(actionRows, ERROR);
+
+        // GOTO 表: 按非终结符分列
+        final var gotoColumns = new int[nonTerminalCount][];
+        for (int column = 0; column < nonTerminalCount; column++) {
+            final var targets = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                targets[state] = table.getGotoAt(state, column);
+            }
+            gotoColumns[column] = targets;
+        }
+        final var gotoComb = Comb.pack(gotoColumns, NO_GOTO);
+
+        // 跳过的单产生式规约: 与 GOTO 表同样分列, 格子中为去重后的规约序列的下标
+        final var cells = table.getElidedReductionCells();
+        final var elidedLists = new ArrayList<int[]>();
+        final var listIndex = new HashMap<List<Integer>, Integer>();
+        final var elidedColumns = new int[nonTerminalCount][];
+        for (int column = 0; column < nonTerminalCount; column++) {
+            final var indices = new int[stateCount];
+            Arrays.fill(indices, NO_ELIDED);
+            for (int state = 0; cells != null && state < stateCount; state++) {
+                final var elided = cells[state * nonTerminalCount + column];
+                if (elided != null && elided.length > 0) {
+                    indices[state] = listIndex.computeIfAbsent(Arrays.stream(elided).boxed().toList(), key -> {
+                        elidedLists.add(elided);
+                        return elidedLists.size() - 1;
+                    });
+                }
+            }
+            elidedColumns[column] = indices;
+        }
+        final var elidedComb = Comb.pack(elidedColumns, NO_ELIDED);
+
+        return new CompressedLRTable(table, defaultActions, actionComb, gotoComb,
+            elidedComb, elidedLists.toArray(new int[0][]));
+    }
+
+    @Override
+    public int getAction(int state, int tokenCode) {
+        final var codeIndex = tokenCode + 1;
+        if (codeIndex < 0 || codeIndex >= columnOfCode.length || columnOfCode[codeIndex] < 0) {
+            return ERROR;
+        }
+
+        final var index = actionBase[state] + columnOfCode[codeIndex];
+        return actionCheck[index] == state ? actionTable[index] : defaultActions[state];
+    }
+
+    @Override
+    public int getGoto(int state, int production) {
+        final var head = productionHeads[production];
+        if (head == NO_GOTO) {
+            return NO_GOTO;
+        }
+
+        final var index = gotoBase[head] + state;
+        return gotoCheck[index] == head ? gotoTable[index] : NO_GOTO;
+    }
+
+    @Override
+    public int[] getElidedReductions(int state, int production) {
+        final var head = productionHeads[production];
+        if (elidedLists.length == 0 || head == NO_GOTO) {
+            return NO_ELIDED_REDUCTIONS;
+        }
+
+        final var index = elidedBase[head] + state;
+        return elidedCheck[index] == head ? elidedLists[elidedTable[index]] : NO_ELIDED_REDUCTIONS;
+    }
+
+    @Override
+    public int getProductionLength(int production) {
+        return productionLengths[production];
+    }
+
+    @Override
+    public int getInitState() {
+        return 0;
+    }
+
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    @Override
+    public int getProductionCount() {
+        return productionLengths.length;
+    }
+
+    @Override
+    public List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    @Override
+    public List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
+    /**
+     * 输出压缩前后的大小对比
+     *
+     * @param path 输出文件路径
+     */
+    public void dumpStatistics(String path) {
+        final var stateCount = statuses.length;
+        final var denseAction = stateCount * terminals.size();
+        final var denseGoto = stateCount * nonTerminals.size();
+        final var compressedAction = defaultActions.length + actionBase.length + actionTable.length + actionCheck.length;
+        final var compressedGoto = gotoBase.length + gotoTable.length + gotoCheck.length;
+        // 稠密形式每个 GOTO 格子一个引用, 两种形式都要存放各规约序列本身
+        final var listInts = Arrays.stream(elidedLists).mapToInt(list -> list.length).sum();
+        final var denseElided = elidedLists.length == 0 ? 0 : denseGoto + denseElidedInts;
+        final var compressedElided = elidedLists.length == 0 ? 0
+            : elidedBase.length + elidedTable.length + elidedCheck.length + elidedLists.length + listInts;
+        final var dense = denseAction + denseGoto + denseElided;
+        final var compressed = compressedAction + compressedGoto + compressedElided;
+
+        final var lines = new ArrayList<String>();
+        lines.add("states: %d, terminals: %d, nonterminals: %d".formatted(stateCount, terminals.size(), nonTerminals.size()));
+        lines.add("ACTION: %d entries (%d non-default), dense %d ints, compressed %d ints, ratio %.2f%%".formatted(
+            actionEntries, actionEntries - defaultedActions, denseAction, compressedAction, ratio(compressedAction, denseAction)));
+        lines.add("GOTO: %d entries, dense %d ints, compressed %d ints, ratio %.2f%%".formatted(
+            gotoEntries, denseGoto, compressedGoto, ratio(compressedGoto, denseGoto)));
+        lines.add("elided reductions: %d cells (%d distinct), dense %d ints, compressed %d ints, ratio %.2f%%".formatted(
+            elidedCells, elidedLists.length, denseElided, compressedElided, ratio(compressedElided, denseElided)));
+        lines.add("total: dense %d ints, compressed %d ints, ratio %.2f%%".formatted(
+            dense, compressed, ratio(compressed, dense)));
+        FileUtils.writeLines(path, lines);
+    }
+
+    private static double ratio(int compressed, int dense) {
+        return dense == 0 ? 100.0 : 100.0 * compressed / dense;
+    }
+
+    /**
+     * @param values    一行格子
+     * @param candidate 可以作为默认值的格子
+     * @param fallback  没有可以作为默认值的格子时的默认值
+     * @return 满足条件的格子中出现次数最多的值, 次数相同时取较小的值
+     */
+    private static int mostFrequent(int[] values, IntPredicate candidate, int fallback) {
+        final var counts = new HashMap<Integer, Integer>();
+        for (final var value : values) {
+            if (candidate.test(value)) {
+                counts.merge(value, 1, Integer::sum);
+            }
+        }
+        return counts.entrySet().stream()
+            .max(Map.Entry.<Integer, Integer>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+            .map(Map.Entry::getKey)
+            .orElse(fallback);
+    }
+
+    /**
+     * 行位移压缩的结果
+     *
+     * @param base  各行在 table 中的起始位置
+     * @param table 叠放后的格子
+     * @param check 各格子所属的行, 空位为 -1
+     */
+    private record Comb(int[] base, int[] table, int[] check) {
+        /**
+         * 以 first-fit 的方式叠放各行, 非空格子多的行优先放置
+         *
+         * @param rows  各行
+         * @param empty 代表空格子的值
+         * @return 压缩结果
+         */
+        static Comb pack(int[][] rows, int empty) {
+            final var width = rows.length == 0 ? 0 : rows[0].length;
+            final var columnsOfRow = new int[rows.length][];
+            for (int row = 0; row < rows.length; row++) {
+                final var values = rows[row];
+                columnsOfRow[row] = IntStream.range(0, width).filter(column -> values[column] != empty).toArray();
+            }
+
+            final var order = IntStream.range(0, rows.length).boxed()
+                .sorted(Comparator.comparingInt((Integer row) -> columnsOfRow[row].length).reversed())
+                .mapToInt(Integer::intValue).toArray();
+
+            // 容量足够放下任何一行, 查表时 base + column 不会越界
+            var table = new int[Math.max(width, 1)];
+            var check = new int[table.length];
+            Arrays.fill(check, -1);
+            final var base = new int[rows.length];
+
+            for (final var row : order) {
+                final var columns = columnsOfRow[row];
+                var offset = 0;
+                while (!fits(check, columns, offset)) {
+                    offset += 1;
+                }
+
+                if (offset + width > table.length) {
+                    final var oldLength = table.length;
+                    table = Arrays.copyOf(table, offset + width);
+                    check = Arrays.copyOf(check, offset + width);
+                    Arrays.fill(check, oldLength, check.length, -1);
+                }
+
+                base[row] = offset;
+                for (final var column : columns) {
+                    table[offset + column] = rows[row][column];
+                    check[offset + column] = row;
+                }
+            }
+            return new Comb(base, table, check);
+        }
+
+        private static boolean fits(int[] check, int[] columns, int offset) {
+            for (final var column : columns) {
+                final var index = offset + column;
+                if (index < check.length && check[index] != -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private CompressedLRTable(CompiledLRTable table, int[] defaultActions, Comb actionComb, Comb gotoComb,
+                              Comb elidedComb, int[][] elidedLists) {
+        this.statuses = table.getStatuses();
+        this.terminals = table.getTerminals();
+        this.nonTerminals = table.getNonTerminals();
+        this.productions = table.getProductions();
+        this.productionHeads = table.getProductionHeads();
+        this.productionLengths = table.getProductionLengths();
+        this.columnOfCode = table.getColumnOfCode();
+
+        this.defaultActions = defaultActions;
+        this.actionBase = actionComb.base();
+        this.actionTable = actionComb.table();
+        this.actionCheck = actionComb.check();
+        this.gotoBase = gotoComb.base();
+        this.gotoTable = gotoComb.table();
+        this.gotoCheck = gotoComb.check();
+        this.elidedBase = elidedComb.base();
+        this.elidedTable = elidedComb.table();
+        this.elidedCheck = elidedComb.check();
+        this.elidedLists = elidedLists;
+
+        // 统计信息
+        var actionEntries = 0;
+        var defaultedActions = 0;
+        for (int state = 0; state < statuses.length; state++) {
+            for (int column = 0; column < terminals.size(); column++) {
+                final var action = table.getActionAt(state, column);
+                if (action != ERROR) {
+                    actionEntries += 1;
+                    if (action == defaultActions[state]) {
+                        defaultedActions += 1;
+                    }
+                }
+            }
+        }
+        var gotoEntries = 0;
+        for (int column = 0; column < nonTerminals.size(); column++) {
+            for (int state = 0; state < statuses.length; state++) {
+                if (table.getGotoAt(state, column) != NO_GOTO) {
+                    gotoEntries += 1;
+                }
+            }
+        }
+        var elidedCells = 0;
+        var denseElidedInts = 0;
+        final var cells = table.getElidedReductionCells();
+        for (final var cell : cells == null ? new int[0][] : cells) {
+            if (cell != null && cell.length > 0) {
+                elidedCells += 1;
+                denseElidedInts += cell.length;
+            }
+        }
+        this.actionEntries = actionEntries;
+        this.defaultedActions = defaultedActions;
+        this.gotoEntries = gotoEntries;
+        this.elidedCells = elidedCells;
+        this.denseElidedInts = denseElidedInts;
+    }
+
+    private final Status[] statuses;
+    private final List<TokenKind> terminals;
+    private final List<NonTerminal> nonTerminals;
+    private final Production[] productions;
+    private final int[] productionHeads;
+    private final int[] productionLengths;
+    private final int[] columnOfCode;
+
+    /**
+     * ACTION 表: 以状态编号索引的默认动作, 与以状态为行, 终结符为列的行位移压缩表
+     */
+    private final int[] defaultActions;
+    private final int[] actionBase;
+    private final int[] actionTable;
+    private final int[] actionCheck;
+
+    /**
+     * GOTO 表: 以非终结符为行, 状态为列的行位移压缩表
+     */
+    private final int[] gotoBase;
+    private final int[] gotoTable;
+    private final int[] gotoCheck;
+
+    /**
+     * 跳过的单产生式规约: 与 GOTO 表同样布局的行位移压缩表, 格子中为 elidedLists 的下标
+     */
+    private final int[] elidedBase;
+    private final int[] elidedTable;
+    private final int[] elidedCheck;
+    private final int[][] elidedLists;
+
+    /**
+     * 原表中非空的格子数, 与其中被默认值覆盖的格子数
+     */
+    private final int actionEntries;
+    private final int defaultedActions;
+    private final int gotoEntries;
+
+    /**
+     * 原表中带有跳过的规约的格子数, 与这些格子中的规约序列的总长度
+     */
+    private final int elidedCells;
+    private final int denseElidedInts;
+
+    /**
+     * 压缩表中代表没有跳过的规约的空格子
+     */
+    private static final int NO_ELIDED = -1;
+}
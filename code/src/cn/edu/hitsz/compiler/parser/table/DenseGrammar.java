@@ -0,0 +1,404 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 稠密编号的文法, 供 {@link TableGenerator} 使用
+ * <br>
+ * 文法符号, 产生式与项目都被编号为从 0 开始的连续整数:
+ * <ul>
+ *     <li>文法符号: 非终结符编号为 [0, N), 终结符编号为 [N, N + T); 终结符另有自己的编号 [0, T), 用于位集合</li>
+ *     <li>产生式: 其在文法中的位置, 第 0 条为拓广文法的起始产生式</li>
+ *     <li>项目: 产生式 p 的点在 dot 处的项目编号为 itemBase[p] + dot, 因此项目的后继项就是编号加一</li>
+ * </ul>
+ * nullable, FIRST, FOLLOW 集合都以 {@link Bits} 位集合表示, 并以工作表 (worklist) 的方式求不动点:
+ * 只有集合发生了变化的符号才会被重新放入工作表, 把它的集合传播给依赖它的符号.
+ */
+final class DenseGrammar {
+    DenseGrammar(List<Production> productions, Collection<NonTerminal> nonTerminals, Collection<TokenKind> terminals) {
+        this.productions = List.copyOf(productions);
+        this.nonTerminals = List.copyOf(nonTerminals);
+        this.terminals = List.copyOf(terminals);
+        this.nonTerminalCount = this.nonTerminals.size();
+        this.terminalCount = this.terminals.size();
+
+        for (int i = 0; i < nonTerminalCount; i++) {
+            symbolIds.put(this.nonTerminals.get(i), i);
+        }
+        for (int i = 0; i < terminalCount; i++) {
+            symbolIds.put(this.terminals.get(i), nonTerminalCount + i);
+        }
+
+        final var productionCount = this.productions.size();
+        heads = new int[productionCount];
+        bodies = new int[productionCount][];
+        itemBase = new int[productionCount + 1];
+        for (int p = 0; p < productionCount; p++) {
+            final var production = this.productions.get(p);
+            heads[p] = getSymbol(production.head());
+            bodies[p] = production.body().stream().mapToInt(this::getSymbol).toArray();
+            itemBase[p + 1] = itemBase[p] + bodies[p].length + 1;
+        }
+
+        final var itemCount = itemBase[productionCount];
+        itemProductions = new int[itemCount];
+        itemSymbols = new int[itemCount];
+        for (int p = 0; p < productionCount; p++) {
+            for (int dot = 0; dot <= bodies[p].length; dot++) {
+                itemProductions[itemBase[p] + dot] = p;
+                itemSymbols[itemBase[p] + dot] = dot < bodies[p].length ? bodies[p][dot] : -1;
+            }
+        }
+
+        final var byHead = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            byHead.add(new ArrayList<>());
+        }
+        for (int p = 0; p < productionCount; p++) {
+            byHead.get(heads[p]).add(p);
+        }
+        productionsByHead = byHead.stream()
+            .map(list -> list.stream().mapToInt(Integer::intValue).toArray())
+            .toArray(int[][]::new);
+
+        nullable = Bits.create(nonTerminalCount);
+        first = new long[nonTerminalCount][];
+        follow = new long[nonTerminalCount][];
+        suffixFirst = new long[itemCount][];
+        suffixNullable = Bits.create(itemCount);
+    }
+
+    /**
+     * 求可以推导出空串的非终结符与所有非终结符的 FIRST 集合,
+     * 同时求出每个项目中点后面那个符号之后的符号串的 FIRST 集合, 供 FOLLOW 与 LR(1) 闭包使用
+     */
+    void calcFirst() {
+        calcNullable();
+
+        // 对 A -> X1 X2 ... Xn, 若 X1 ... Xi-1 都可以推导出空串, 则 FIRST(A) 包含 FIRST(Xi)
+        // 终结符直接加入, 非终结符记为依赖 Xi -> A, 由工作表传播
+        final var dependents = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            first[i] = Bits.create(terminalCount);
+            dependents.add(new ArrayList<>());
+        }
+        for (int p = 0; p < bodies.length; p++) {
+            for (final var symbol : bodies[p]) {
+                if (isTerminal(symbol)) {
+                    Bits.set(first[heads[p]], symbol - nonTerminalCount);
+                    break;
+                }
+                dependents.get(symbol).add(heads[p]);
+                if (!isNullable(symbol)) {
+                    break;
+                }
+            }
+        }
+        propagate(first, dependents);
+
+        // 从产生式末尾向前累积后缀的 FIRST 集合
+        for (int p = 0; p < bodies.length; p++) {
+            final var body = bodies[p];
+            var suffix = Bits.create(terminalCount);
+            var suffixIsNullable = true;
+            for (int dot = body.length - 1; dot >= 0; dot--) {
+                final var item = itemBase[p] + dot;
+                suffixFirst[item] = suffix.clone();
+                if (suffixIsNullable) {
+                    Bits.set(suffixNullable, item);
+                }
+
+                final var symbol = body[dot];
+                if (isTerminal(symbol)) {
+                    suffix = Bits.create(terminalCount);
+                    Bits.set(suffix, symbol - nonTerminalCount);
+                    suffixIsNullable = false;
+                } else if (isNullable(symbol)) {
+                    Bits.or(suffix, first[symbol]);
+                } else {
+                    suffix = first[symbol].clone();
+                    suffixIsNullable = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 求所有非终结符的 FOLLOW 集合, 需要先调用 {@link #calcFirst()}
+     */
+    void calcFollow() {
+        // 对 A -> alpha B beta, FOLLOW(B) 包含 FIRST(beta); 若 beta 可以推导出空串, 则还包含 FOLLOW(A)
+        final var dependents = new ArrayList<List<Integer>>();
+        final var used = Bits.create(nonTerminalCount);
+        for (int i = 0; i < nonTerminalCount; i++) {
+            follow[i] = Bits.create(terminalCount);
+            dependents.add(new ArrayList<>());
+        }
+        for (int p = 0; p < bodies.length; p++) {
+            final var body = bodies[p];
+            for (int dot = 0; dot < body.length; dot++) {
+                final var symbol = body[dot];
+                if (isTerminal(symbol)) {
+                    continue;
+                }
+                Bits.set(used, symbol);
+                Bits.or(follow[symbol], suffixFirst[itemBase[p] + dot]);
+                if (Bits.get(suffixNullable, itemBase[p] + dot)) {
+                    dependents.get(heads[p]).add(symbol);
+                }
+            }
+        }
+
+        // 没有出现在任何产生式体中的非终结符 (包括拓广文法的开始符号) 只能出现在输入的末尾
+        final var eof = getTerminalIndex(TokenKind.eof());
+        for (int i = 0; i < nonTerminalCount; i++) {
+            if (!Bits.get(used, i)) {
+                Bits.set(follow[i], eof);
+            }
+        }
+        propagate(follow, dependents);
+    }
+
+    private void calcNullable() {
+        // remaining[p]: 产生式 p 的体中还没有被确认可以推导出空串的符号个数, 减到 0 时其头可以推导出空串
+        final var remaining = new int[bodies.length];
+        final var occurrences = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            occurrences.add(new ArrayList<>());
+        }
+
+        final var worklist = new int[nonTerminalCount];
+        var size = 0;
+        for (int p = 0; p < bodies.length; p++) {
+            remaining[p] = bodies[p].length;
+            for (final var symbol : bodies[p]) {
+                if (!isTerminal(symbol)) {
+                    occurrences.get(symbol).add(p);
+                }
+            }
+            if (remaining[p] == 0 && !isNullable(heads[p])) {
+                Bits.set(nullable, heads[p]);
+                worklist[size++] = heads[p];
+            }
+        }
+
+        while (size > 0) {
+            final var symbol = worklist[--size];
+            for (final var p : occurrences.get(symbol)) {
+                remaining[p] -= 1;
+                if (remaining[p] == 0 && !isNullable(heads[p])) {
+                    Bits.set(nullable, heads[p]);
+                    worklist[size++] = heads[p];
+                }
+            }
+        }
+    }
+
+    /**
+     * 沿依赖关系传播集合直到不再变化
+     *
+     * @param sets       以非终结符编号索引的集合, 原地修改
+     * @param dependents dependents[X] 中的每个非终结符的集合都包含 X 的集合
+     */
+    private void propagate(long[][] sets, List<List<Integer>> dependents) {
+        final var worklist = new int[nonTerminalCount];
+        final var queued = Bits.create(nonTerminalCount);
+        var size = 0;
+        for (int i = 0; i < nonTerminalCount; i++) {
+            worklist[size++] = i;
+            Bits.set(queued, i);
+        }
+
+        while (size > 0) {
+            final var symbol = worklist[--size];
+            Bits.clear(queued, symbol);
+            for (final var dependent : dependents.get(symbol)) {
+                if (Bits.or(sets[dependent], sets[symbol]) && !Bits.get(queued, dependent)) {
+                    Bits.set(queued, dependent);
+                    worklist[size++] = dependent;
+                }
+            }
+        }
+    }
+
+    int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    int getTerminalCount() {
+        return terminalCount;
+    }
+
+    int getProductionCount() {
+        return productions.size();
+    }
+
+    int getItemCount() {
+        return itemProductions.length;
+    }
+
+    boolean isTerminal(int symbol) {
+        return symbol >= nonTerminalCount;
+    }
+
+    /**
+     * @param symbol 非终结符的符号编号
+     */
+    boolean isNullable(int symbol) {
+        return !isTerminal(symbol) && Bits.get(nullable, symbol);
+    }
+
+    int getSymbol(Term term) {
+        return symbolIds.get(term);
+    }
+
+    int getTerminalIndex(TokenKind terminal) {
+        return symbolIds.get(terminal) - nonTerminalCount;
+    }
+
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
+    TokenKind getTerminal(int terminalIndex) {
+        return terminals.get(terminalIndex);
+    }
+
+    NonTerminal getNonTerminal(int symbol) {
+        return nonTerminals.get(symbol);
+    }
+
+    Production getProduction(int production) {
+        return productions.get(production);
+    }
+
+    int getHead(int production) {
+        return heads[production];
+    }
+
+    int[] getBody(int production) {
+        return bodies[production];
+    }
+
+    /**
+     * @param nonTerminal 非终结符的符号编号
+     * @return 以其为头的产生式, 按在文法中的顺序排列
+     */
+    int[] getProductionsByHead(int nonTerminal) {
+        return productionsByHead[nonTerminal];
+    }
+
+    /**
+     * @return 产生式 production 点在开头的项目
+     */
+    int getFirstItem(int production) {
+        return itemBase[production];
+    }
+
+    int getItemProduction(int item) {
+        return itemProductions[item];
+    }
+
+    int getItemDot(int item) {
+        return item - itemBase[itemProductions[item]];
+    }
+
+    /**
+     * @return 项目中点后面的符号; 点在末尾时为 -1
+     */
+    int getSymbolAfterDot(int item) {
+        return itemSymbols[item];
+    }
+
+    /**
+     * @return A -> alpha . X beta 中 beta 的 FIRST 集合, 不可修改
+     */
+    long[] getSuffixFirst(int item) {
+        return suffixFirst[item];
+    }
+
+    /**
+     * @return A -> alpha . X beta 中 beta 是否可以推导出空串
+     */
+    boolean isSuffixNullable(int item) {
+        return Bits.get(suffixNullable, item);
+    }
+
+    long[] getFirst(int nonTerminal) {
+        return first[nonTerminal];
+    }
+
+    long[] getFollow(int nonTerminal) {
+        return follow[nonTerminal];
+    }
+
+    /**
+     * @return 形如 {@code A -> B . C} 的项目描述
+     */
+    String itemToString(int item) {
+        final var production = productions.get(itemProductions[item]);
+        final var dot = getItemDot(item);
+        final var builder = new StringBuilder();
+
+        builder.append(production.head());
+        builder.append(" -> ");
+
+        final var body = production.body();
+        for (int i = 0; i < body.size(); i++) {
+            if (i == dot) {
+                builder.append(" .");
+            }
+            builder.append(" ").append(body.get(i));
+        }
+
+        if (dot == body.size()) {
+            builder.append(" .");
+        }
+
+        return builder.toString();
+    }
+
+    private final List<Production> productions;
+    private final List<NonTerminal> nonTerminals;
+    private final List<TokenKind> terminals;
+    private final int nonTerminalCount;
+    private final int terminalCount;
+    private final Map<Term, Integer> symbolIds = new HashMap<>();
+
+    /**
+     * 以产生式编号索引的产生式头与产生式体 (符号编号)
+     */
+    private final int[] heads;
+    private final int[][] bodies;
+    private final int[][] productionsByHead;
+
+    /**
+     * 项目编号: itemBase[p] 为产生式 p 点在开头的项目, 以项目编号索引其产生式与点后面的符号
+     */
+    private final int[] itemBase;
+    private final int[] itemProductions;
+    private final int[] itemSymbols;
+
+    /**
+     * 以非终结符编号索引的 nullable, FIRST, FOLLOW, 集合元素为终结符编号
+     */
+    private final long[] nullable;
+    private final long[][] first;
+    private final long[][] follow;
+
+    /**
+     * 以项目编号索引: 项目 A -> alpha . X beta 中 beta 的 FIRST 集合与 beta 是否可以推导出空串
+     */
+    private final long[][] suffixFirst;
+    private final long[] suffixNullable;
+}
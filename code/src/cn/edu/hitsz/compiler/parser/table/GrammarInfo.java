@@ -9,12 +9,17 @@ import java.util.*;
 /**
  * 读取语法文件 (grammar.txt), 获得产生式的原始字符串和非终结符
  * <br>
+ * 除产生式外, 语法文件中还可以有形如 {@code %left + -;} 的优先级声明 (见 {@link Precedence}), 以及空行.
+ * 它们不计入产生式的编号, 产生式按其在文件中出现的顺序从 1 开始编号.
+ * <br>
  * 你不应该修改此文件
  */
 public class GrammarInfo {
     private final Map<String, NonTerminal> nonTerminals = new HashMap<>();
     private final Map<String, Production> productions = new HashMap<>();
     private final List<Production> productionsInOrder = new ArrayList<>();
+    private final Map<String, Precedence> precedences = new HashMap<>();
+    private final Map<Production, Precedence> productionPrecedences = new HashMap<>();
 
     private NonTerminal getOrCreateNonTerminal(String name) {
         nonTerminals.computeIfAbsent(name, NonTerminal::new);
@@ -23,12 +28,22 @@ public class GrammarInfo {
 
     private GrammarInfo() {
         final var lines = FileUtils.readLines(FilePathConfig.GRAMMAR_PATH);
-        for (int idx = 0; idx < lines.size(); idx++) {
-            final var line = lines.get(idx);
-            // 形如 `A -> B ( id intConst ) C;` 的产生式
-            // 先删除分号, 按 -> 切, 再按空格切 body
+        for (final var line : lines) {
+            // 先删除分号
             final var withoutComma = line.replace(";", "");
-            final var words = withoutComma.split(" -> ");
+            if (withoutComma.isBlank()) {
+                continue;
+            }
+            if (withoutComma.startsWith("%")) {
+                parseDeclaration(withoutComma);
+                continue;
+            }
+
+            // 形如 `A -> B ( id intConst ) C;` 的产生式, 末尾可能带有 `%prec name`
+            // 按 -> 切, 再按空格切 body
+            final var precIndex = withoutComma.indexOf(" %prec ");
+            final var text = precIndex < 0 ? withoutComma : withoutComma.substring(0, precIndex);
+            final var words = text.split(" -> ");
             final var headString = words[0];
             final var bodyStrings = words[1].split(" ");
 
@@ -43,13 +58,54 @@ public class GrammarInfo {
                 }
             }
 
-            // idx + 1 是为了让 production 的标号与行号相同, 方便查看
-            final var production = new Production(idx + 1, head, body);
+            // 产生式的标号从 1 开始, 不计优先级声明与空行; 对于只有产生式的语法文件, 标号与行号相同, 方便查看
+            final var production = new Production(productionsInOrder.size() + 1, head, body);
             productionsInOrder.add(production);
-            productions.put(withoutComma, production);
+            productions.put(text, production);
+
+            // 产生式的优先级: 显式指定的, 或者产生式体中最后一个终结符的
+            if (precIndex >= 0) {
+                final var name = withoutComma.substring(precIndex + " %prec ".length()).strip();
+                if (!precedences.containsKey(name)) {
+                    throw new RuntimeException("Undeclared precedence in grammar file: " + name);
+                }
+                productionPrecedences.put(production, precedences.get(name));
+            } else {
+                for (int i = body.size() - 1; i >= 0; i--) {
+                    if (body.get(i) instanceof TokenKind terminal) {
+                        final var precedence = precedences.get(terminal.getTermName());
+                        if (precedence != null) {
+                            productionPrecedences.put(production, precedence);
+                        }
+                        break;
+                    }
+                }
+            }
         }
     }
 
+    /**
+     * 处理形如 `%left + -` 的优先级声明, 越靠后的声明优先级越高
+     *
+     * @param line 删除分号后的声明
+     */
+    private void parseDeclaration(String line) {
+        final var words = line.strip().split(" +");
+        final var associativity = switch (words[0]) {
+            case "%left" -> Precedence.Associativity.LEFT;
+            case "%right" -> Precedence.Associativity.RIGHT;
+            case "%nonassoc" -> Precedence.Associativity.NONASSOC;
+            default -> throw new RuntimeException("Unknown declaration in grammar file: " + line);
+        };
+
+        final var precedence = new Precedence(nextPrecedenceLevel++, associativity);
+        for (int i = 1; i < words.length; i++) {
+            precedences.put(words[i], precedence);
+        }
+    }
+
+    private int nextPrecedenceLevel = 1;
+
     // 为了防止有人看不懂, 就不用枚举定义单例了
     // 顺手写个懒加载
     private static GrammarInfo instance = null;
@@ -88,6 +144,22 @@ public class GrammarInfo {
         return productions.get(text);
     }
 
+    /**
+     * @param terminal 终结符
+     * @return 声明的优先级, 没有声明时为空
+     */
+    public static Optional<Precedence> getPrecedence(TokenKind terminal) {
+        return Optional.ofNullable(getInstance().precedences.get(terminal.getTermName()));
+    }
+
+    /**
+     * @param production 产生式
+     * @return 产生式的优先级, 没有时为空
+     */
+    public static Optional<Precedence> getPrecedence(Production production) {
+        return Optional.ofNullable(getInstance().productionPrecedences.get(production));
+    }
+
     public static Production getBeginProduction() {
         return getInstance().productionsInOrder.get(0);
     }
@@ -0,0 +1,129 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.List;
+
+/**
+ * 以整数编号访问的 LR 分析表, 供语法分析驱动程序使用
+ * <br>
+ * 状态, 产生式都以整数编号表示, 终结符以词法单元类型的码点 ({@link TokenKind#getCode()}) 表示.
+ * 动作被压缩进一个 int 中: 低两位为动作类型 ({@link #ERROR}, {@link #SHIFT}, {@link #REDUCE}, {@link #ACCEPT}),
+ * 其余各位为移入的目标状态或规约的产生式编号 ({@link Production#index()}).
+ *
+ * @see CompiledLRTable 稠密数组形式
+ * @see CompressedLRTable 压缩形式
+ */
+public interface ParseTable {
+    /**
+     * 动作类型
+     */
+    int ERROR = 0;
+    int SHIFT = 1;
+    int REDUCE = 2;
+    int ACCEPT = 3;
+
+    /**
+     * 代表不存在的转移
+     */
+    int NO_GOTO = -1;
+
+    /**
+     * 代表没有被跳过的规约
+     */
+    int[] NO_ELIDED_REDUCTIONS = new int[0];
+
+    /**
+     * @param kind   动作类型
+     * @param target 移入的目标状态或规约的产生式编号
+     * @return 压缩后的动作
+     */
+    static int pack(int kind, int target) {
+        return (target << 2) | kind;
+    }
+
+    /**
+     * @param action 压缩后的动作
+     * @return 动作类型
+     */
+    static int kindOf(int action) {
+        return action & 3;
+    }
+
+    /**
+     * @param action 压缩后的动作
+     * @return 移入的目标状态或规约的产生式编号
+     */
+    static int targetOf(int action) {
+        return action >>> 2;
+    }
+
+    /**
+     * @param state     状态编号
+     * @param tokenCode 词法单元类型的码点
+     * @return 压缩后的动作
+     */
+    int getAction(int state, int tokenCode);
+
+    /**
+     * @param state      规约后露出的栈顶状态编号
+     * @param production 产生式编号
+     * @return 规约该产生式后应转移到的状态
+     */
+    int getGoto(int state, int production);
+
+    /**
+     * 分析表可以跳过单产生式的规约 (见 {@link CompiledLRTable#bypassUnitProductions()}), 此时 {@link #getGoto(int, int)}
+     * 直接到达这些规约之后的状态. 驱动程序可以据此向需要的观察者补发被跳过的规约
+     *
+     * @param state      规约后露出的栈顶状态编号
+     * @param production 产生式编号
+     * @return 该次转移中跳过的规约, 依次为 (执行规约时的状态编号, 产生式编号) 对; 没有时为 {@link #NO_ELIDED_REDUCTIONS}
+     */
+    default int[] getElidedReductions(int state, int production) {
+        return NO_ELIDED_REDUCTIONS;
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式体的长度
+     */
+    int getProductionLength(int production);
+
+    /**
+     * @return 起始状态的编号
+     */
+    int getInitState();
+
+    /**
+     * @param state 状态编号
+     * @return 对应的状态对象
+     */
+    Status getStatus(int state);
+
+    /**
+     * @param production 产生式编号
+     * @return 对应的产生式
+     */
+    Production getProduction(int production);
+
+    /**
+     * @return 状态数
+     */
+    int getStateCount();
+
+    /**
+     * @return 产生式编号的上界, 产生式编号均在 [0, 上界) 中. 编号可以有空缺, 此时 {@link #getProduction(int)} 返回 null
+     */
+    int getProductionCount();
+
+    /**
+     * @return 文法中的终结符
+     */
+    List<TokenKind> getTerminals();
+
+    /**
+     * @return 文法中的非终结符
+     */
+    List<NonTerminal> getNonTerminals();
+}
@@ -0,0 +1,14 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 终结符或产生式的优先级与结合性, 由语法文件中的 {@code %left}, {@code %right}, {@code %nonassoc} 声明给出
+ * <br>
+ * 与 yacc 相同, 同一行声明的符号优先级相同, 越靠后声明的优先级越高.
+ * 产生式的优先级默认为其产生式体中最后一个终结符的优先级, 也可以在产生式末尾以 {@code %prec name} 指定.
+ *
+ * @param level         优先级, 从 1 开始, 越大越优先
+ * @param associativity 结合性
+ */
+public record Precedence(int level, Associativity associativity) {
+    public enum Associativity {LEFT, RIGHT, NONASSOC}
+}
@@ -9,7 +9,7 @@ import java.util.stream.Collectors;
  * <br>
  * 产生式的等价性由其 index 唯一确定. 即, 两条产生式 equals 当且仅当它们 index 相等.
  *
- * @param index 该产生式的索引, 为其在 grammar.txt 文件内的行号, 从 1 开始
+ * @param index 该产生式的索引, 为其在 grammar.txt 文件内的序号 (不计优先级声明与空行), 从 1 开始
  * @param head  该产生式的头
  * @param body  该产生式的体
  */
@@ -0,0 +1,78 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * {@link TableGenerator} 生成结果的磁盘缓存
+ * <br>
+ * 缓存以 {@link BinaryTableFile} 的格式存放, 以文法文件与码点文件的校验和, 构造方法以及生成器的输出版本
+ * ({@link TableGenerator#OUTPUT_VERSION}) 为键: 只要它们都没有改变, 就直接加载上一次生成的分析表, 不再计算 FIRST/FOLLOW 与规范项目集族. 每次真正重新生成时,
+ * 各阶段的耗时会被追加到耗时记录文件中, 以便观察文法增长带来的变化.
+ */
+public final class TableCache {
+    /**
+     * @param algorithm  分析表的构造方法
+     * @param cachePath  缓存文件路径
+     * @param timingPath 耗时记录文件路径
+     */
+    public TableCache(TableGenerator.Algorithm algorithm, String cachePath, String timingPath) {
+        this.algorithm = algorithm;
+        this.cachePath = cachePath;
+        this.timingPath = timingPath;
+    }
+
+    /**
+     * 加载缓存的分析表, 缓存不存在或已经过期时重新生成
+     *
+     * @return 分析表
+     */
+    public CompiledLRTable loadOrGenerate() {
+        final var key = cacheKey();
+        final var cached = BinaryTableFile.load(cachePath, key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        final var generator = new TableGenerator(algorithm);
+        generator.run();
+        final var table = CompiledLRTable.compile(generator.getTable());
+        BinaryTableFile.write(table, key, cachePath);
+        recordTiming(key, generator, table);
+        return table;
+    }
+
+    /**
+     * @return 输入文件的校验和与构造方法, 生成器输出版本合并后的缓存键
+     */
+    private long cacheKey() {
+        final var crc = new CRC32();
+        final var name = algorithm.name().getBytes(StandardCharsets.UTF_8);
+        crc.update(ByteBuffer.allocate(Long.BYTES + Integer.BYTES + name.length)
+            .putLong(BinaryTableFile.checksum())
+            .putInt(TableGenerator.OUTPUT_VERSION)
+            .put(name)
+            .array());
+        return crc.getValue();
+    }
+
+    private void recordTiming(long key, TableGenerator generator, CompiledLRTable table) {
+        final var phases = generator.getPhaseTimes().entrySet().stream()
+            .map(entry -> "%s=%.3fms".formatted(entry.getKey(), entry.getValue() / 1e6))
+            .collect(Collectors.joining(" "));
+        final var line = "%s key=%08x algorithm=%s states=%d %s".formatted(
+            LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), key, algorithm, table.getStateCount(), phases);
+        FileUtils.appendLines(timingPath, List.of(line));
+    }
+
+    private final TableGenerator.Algorithm algorithm;
+    private final String cachePath;
+    private final String timingPath;
+}
@@ -1,410 +1,886 @@
 package cn.edu.hitsz.compiler.parser.table;
 
 import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 支持三种构造方法 (见 {@link Algorithm}):
+ * <ul>
+ *     <li>SLR(1): 在 LR(0) 项目集族上以 FOLLOW 集合决定规约</li>
+ *     <li>LALR(1): 在 LR(0) 项目集族上以 DeRemer–Pennello 算法沿转移关系传播向前看符号, 不需要先构造 LR(1) 项目集族</li>
+ *     <li>LR(1): 构造带向前看符号的规范 LR(1) 项目集族</li>
+ * </ul>
+ * 为了能处理较大的文法, 文法符号, 产生式与项目都被稠密地编号 (见 {@link DenseGrammar}), 各种集合以 {@link Bits} 位集合表示,
+ * 项目集以排好序的项目编号数组表示.
  */
 public class TableGenerator {
+    /**
+     * 分析表的构造方法
+     */
+    public enum Algorithm {SLR, LALR, LR1}
+
     public TableGenerator() {
-        this.productions = GrammarInfo.getProductionsInOrder();
-        this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
-        this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        this(Algorithm.SLR);
+    }
+
+    public TableGenerator(Algorithm algorithm) {
+        this(algorithm, false);
+    }
 
+    /**
+     * @param algorithm 分析表的构造方法
+     * @param parallel  是否并行地构造规范项目集族, 构造出的分析表与顺序构造的完全相同
+     */
+    public TableGenerator(Algorithm algorithm, boolean parallel) {
+        this.algorithm = algorithm;
+        this.parallel = parallel;
+        final var productions = GrammarInfo.getProductionsInOrder();
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
         }
+
+        this.grammar = new DenseGrammar(productions,
+            new HashSet<>(GrammarInfo.getNonTerminals().values()),
+            new HashSet<>(TokenKind.allAllowedTokenKinds().values()));
+        // LR(1) 项目编码为 项目编号 * 终结符个数 + 向前看符号, LR(0) 项目编码就是项目编号
+        this.width = algorithm == Algorithm.LR1 ? grammar.getTerminalCount() : 1;
     }
 
     /**
      * 主体方法
      */
     public void run() {
-        calcFirst();
-        calcFollow();
-        constructDFA();
+        timed("calcFirst", grammar::calcFirst);
+        timed("calcFollow", grammar::calcFollow);
+        timed("constructDFA", this::constructDFA);
+        if (algorithm == Algorithm.LALR) {
+            timed("calcLookahead", this::calcLookahead);
+        }
         dumpItems();
-        genTable();
+        timed("genTable", this::genTable);
+        dumpConflicts();
     }
 
     /**
-     * 将该分析表生成的 LR(0) 规范集族打印到某个文件之中, 用于调试
+     * @return 上一次 {@link #run()} 中各阶段的耗时 (纳秒), 按执行顺序排列
+     */
+    public Map<String, Long> getPhaseTimes() {
+        return Collections.unmodifiableMap(phaseTimes);
+    }
+
+    private void timed(String phase, Runnable action) {
+        final var begin = System.nanoTime();
+        action.run();
+        phaseTimes.put(phase, System.nanoTime() - begin);
+    }
+
+    /**
+     * 将该分析表生成的 LR(0) 规范集族打印到 {@link FilePathConfig#ITEMS_PATH} 之中, 用于调试
      */
     public void dumpItems() {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+            for (final var code : stateItems.get(status.index())) {
+                lines.add("    " + describeItem(code));
             }
         }
 
-        FileUtils.writeLines("data/out/items.txt", lines);
+        FileUtils.writeLines(FilePathConfig.ITEMS_PATH, lines);
+    }
+
+    /**
+     * @param code 项目编码
+     * @return 形如 {@code A -> B . C} 的项目描述, LR(1) 项目在其后附上向前看符号
+     */
+    private String describeItem(int code) {
+        final var item = grammar.itemToString(code / width);
+        return algorithm == Algorithm.LR1 ? item + ", " + grammar.getTerminal(code % width) : item;
     }
 
     /**
      * @return 构造出的 LR 表
      */
     public LRTable getTable() {
-        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
+        return new LRTable(allStatusInIndexOrder, grammar.getTerminals(), grammar.getNonTerminals());
     }
 
-    private final List<Production> productions;
-    private final Set<TokenKind> terminals;
-    private final Set<NonTerminal> nonTerminals;
+    private final Algorithm algorithm;
+    private final boolean parallel;
+    private final DenseGrammar grammar;
 
-    private final Map<Term, Set<TokenKind>> first = new HashMap<>();
-    private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
+    /**
+     * 项目编码中向前看符号所占的基数: LR(1) 为终结符个数, LR(0) 为 1
+     */
+    private final int width;
 
-    private final Set<Term> visited = new HashSet<>();
+    /**
+     * 各阶段的耗时
+     */
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    private final List<Status> allStatusInIndexOrder = new ArrayList<>();
 
     /**
-     * 计算所有符号的 first 集合 <br>
-     * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
+     * 各状态的项目集 (闭包), 以状态编号索引, 元素为项目编码; 核中的项目排在前面
      */
-    private void calcFirst() {
-        for (final var terminal : terminals) {
-            first.put(terminal, Set.of(terminal));
-        }
+    private final List<int[]> stateItems = new ArrayList<>();
 
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFirst(nonTerminal);
-        }
+    /**
+     * 各状态的转移, 相当于 GO(I, X), 以状态编号索引:
+     * transitionSymbols 为有转移的文法符号, 从小到大排列 (因此非终结符上的转移在前), transitionTargets 为对应的目标状态
+     */
+    private final List<int[]> transitionSymbols = new ArrayList<>();
+    private final List<int[]> transitionTargets = new ArrayList<>();
 
-    }
+    /**
+     * LALR(1) 中各状态下各产生式规约时的向前看符号, 以状态编号索引, 键为产生式编号
+     */
+    private final List<Map<Integer, long[]>> lookaheads = new ArrayList<>();
 
     /**
-     * 递归计算特定非终结符的 first
-     *
-     * @param nonTerminal 非终结符
-     * @return 其 first 集合
-     */
-    private Set<TokenKind> calcFirst(Term nonTerminal) {
-        // 如果已经被计算, 则直接返回缓存的结果
-        if (first.containsKey(nonTerminal)) {
-            return first.get(nonTerminal);
-        }
-
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
-                }
-            }
+     * 生成结果的版本, 作为 {@link TableCache} 缓存键的一部分. 任何改变生成结果 (状态编号, 冲突处理等) 的修改都应当增大它,
+     * 使以前缓存的分析表失效
+     */
+    public static final int OUTPUT_VERSION = 3;
+
+    /**
+     * 项目集的核: 排好序的项目编码
+     */
+    private record Kernel(int[] items) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kernel kernel && Arrays.equals(items, kernel.items);
         }
 
-        first.put(nonTerminal, result);
-        return result;
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(items);
+        }
     }
 
-
     /**
-     * 计算所有非终结符的 follow 集合
+     * 构造出所有状态并维护状态与项集之间的对应关系
      */
-    private void calcFollow() {
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFollow(nonTerminal);
+    private void constructDFA() {
+        // LR(1) 的起始项目为 [S -> . S', $], LR(0) 的起始项目为 S -> . S'
+        final var initItem = algorithm == Algorithm.LR1
+            ? grammar.getFirstItem(0) * width + grammar.getTerminalIndex(TokenKind.eof())
+            : grammar.getFirstItem(0);
+        if (parallel) {
+            constructCanonicalLRCollectionInParallel(initItem);
+        } else {
+            constructCanonicalLRCollection(initItem);
         }
-
-        // 对于找完所有产生式了都还没没有 follow 的非终结符
-        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
-        nonTerminals.stream()
-            .map(follow::get).filter(Set::isEmpty)
-            .forEach(set -> set.add(TokenKind.eof()));
     }
 
     /**
-     * 递归计算给定非终结符的 follow 集合
+     * 构造项集 {@code kernel} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
      *
-     * @param nonTerminal 给定的非终止符
-     * @return 其 follow 集合
+     * @param kernel 项集 I, 元素为项目编码
+     * @param marks  以项目编码索引的位集合, 调用前后都为空
+     * @return 闭包, 核中的项目在前
      */
-    private Set<TokenKind> calcFollow(NonTerminal nonTerminal) {
-        // 与 first 类似, 先查找缓存
-        if (follow.containsKey(nonTerminal)) {
-            return follow.get(nonTerminal);
+    private int[] constructClosure(int[] kernel, long[] marks) {
+        // 采用 BFS 的方法来避免每次都检测集合的更改, result 本身就是队列
+        var result = Arrays.copyOf(kernel, Math.max(kernel.length * 2, 8));
+        var size = kernel.length;
+        for (final var code : kernel) {
+            Bits.set(marks, code);
         }
 
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            final var body = production.body();
+        for (int head = 0; head < size; head++) {
+            final var code = result[head];
+            final var item = code / width;
+            // 获得当前项中点后面的符号, 随后查找以该符号作为头部的产生式
+            final var symbol = grammar.getSymbolAfterDot(item);
+            if (symbol < 0 || grammar.isTerminal(symbol)) {
+                continue;
+            }
 
-            // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
-            // 我们直接枚举每条产生式体的每个项
-            for (int i = 0; i < body.size() - 1; i++) {
-                // 如果发现目前的 curr 的话, 后面跟着的符号的 first 就是它的 follow
-                final var symbol = body.get(i);
-                final var next = body.get(i + 1);
+            // LR(0): 构造点在对应产生式开头的新项
+            // LR(1): [A -> alpha . B beta, a] 展开出的项目的向前看符号为 first(beta a) 中的每个终结符
+            final var newLookaheads = width == 1 ? null : grammar.getSuffixFirst(item).clone();
+            if (newLookaheads != null && grammar.isSuffixNullable(item)) {
+                Bits.set(newLookaheads, code % width);
+            }
 
-                if (symbol.equals(nonTerminal)) {
-                    result.addAll(first.get(next));
+            for (final var production : grammar.getProductionsByHead(symbol)) {
+                final var base = grammar.getFirstItem(production) * width;
+                if (newLookaheads == null) {
+                    if (!Bits.get(marks, base)) {
+                        Bits.set(marks, base);
+                        if (size == result.length) {
+                            result = Arrays.copyOf(result, size * 2);
+                        }
+                        result[size++] = base;
+                    }
+                    continue;
                 }
-            }
 
-            // 如果该非终结符出现在产生式的末尾, 那么该产生式的头的 follow 集合也要加入其 follow 集合中
-            final var lastInBody = body.get(body.size() - 1);
-            if (lastInBody.equals(nonTerminal)) {
-                final var head = production.head();
-                if (visited.contains(head)) {
-                    // 如果该产生式头已经在栈中了, 那么意味着这个非终结符有可能一直展开自己
-                    // 这时候 EOF 也可能是它的 Follow
-                    result.add(TokenKind.eof());
-                } else {
-                    // 否则直接递归查找
-                    visited.add(head);
-                    result.addAll(calcFollow(head));
+                for (int word = 0; word < newLookaheads.length; word++) {
+                    var bits = newLookaheads[word];
+                    while (bits != 0) {
+                        final var newCode = base + (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (!Bits.get(marks, newCode)) {
+                            Bits.set(marks, newCode);
+                            if (size == result.length) {
+                                result = Arrays.copyOf(result, size * 2);
+                            }
+                            result[size++] = newCode;
+                        }
+                    }
                 }
             }
         }
 
-        follow.put(nonTerminal, result);
-        return result;
+        for (int i = 0; i < size; i++) {
+            Bits.clear(marks, result[i]);
+        }
+        return Arrays.copyOf(result, size);
     }
 
     /**
-     * 表示一个项目
+     * 构造规范项目集族 (LR(0) 或 LR(1), 取决于项目编码中是否带有向前看符号), 同时记录各状态的转移
      * <br>
-     * 对于 A -> B . C, 其 production 为 A -> B C, dot 为 1 (其下一个项 C 的索引) <br>
-     * 对于 A -> B C ., 其 production 为 A -> B C, dot 为 2 (其产生式体的项数量) <br>
+     * 项目集以其核 (kernel, 即由 GO 函数直接得到的项目) 区分: 闭包中新加入的项目的点都在开头, 因此核不同的项目集闭包也一定不同.
+     * 这样对已经存在的状态就不必再求一次闭包. 核以排好序的项目编码数组表示, 查找已有状态时只需比较整数数组.
      *
-     * @param production 产生式
-     * @param dot        目前解析到的位置
+     * @param initItem 起始项目 S -> . S' 的编码
      */
-    private record Item(Production production, int dot) {
-        /**
-         * @return 点的位置是否在产生式的末尾
-         */
-        public boolean isDotAtEnd() {
-            return production.body().size() == dot;
+    private void constructCanonicalLRCollection(int initItem) {
+        final var marks = Bits.create(grammar.getItemCount() * width);
+        final var kernels = new HashMap<Kernel, Integer>();
+        addStatus(new int[]{initItem}, kernels, marks);
+
+        // 以 BFS 形式搜索, allStatusInIndexOrder 本身就是队列; 后继状态按文法符号的编号顺序编号 (先非终结符后终结符)
+        for (int idx = 0; idx < allStatusInIndexOrder.size(); idx++) {
+            final var successors = successorsOf(stateItems.get(idx));
+            final var symbols = successors.symbols();
+            final var targets = new int[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                final var kernel = successors.kernels()[i];
+                final var existing = kernels.get(new Kernel(kernel));
+                targets[i] = existing != null ? existing : addStatus(kernel, kernels, marks);
+            }
+            transitionSymbols.set(idx, symbols);
+            transitionTargets.set(idx, targets);
         }
+    }
 
-        /**
-         * @return 获得点后面的文法符号; 若点的位置在末尾则返回空
-         */
-        public Optional<Term> getAfterDot() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(production.body().get(dot));
+    /**
+     * 项目集中的项目按点后面的符号分组, 每组项目的后继项就是 GO(I, X) 的核
+     *
+     * @param symbols 有转移的文法符号, 从小到大排列
+     * @param kernels 各符号对应的核, 已排好序
+     */
+    private record Successors(int[] symbols, int[][] kernels) {
+    }
+
+    /**
+     * @param items 项目集 I (闭包)
+     * @return I 在各文法符号上的后继项目集的核
+     */
+    private Successors successorsOf(int[] items) {
+        // 将 (点后面的符号, 后继项) 打包进一个 long 后排序, 同一符号的后继项就聚在一起且各自有序
+        final var pairs = new long[items.length];
+        var size = 0;
+        for (final var code : items) {
+            final var symbol = grammar.getSymbolAfterDot(code / width);
+            if (symbol >= 0) {
+                // 后继项的编号就是项目编号加一
+                pairs[size++] = ((long) symbol << 32) | (code + width);
             }
         }
+        Arrays.sort(pairs, 0, size);
 
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
+        var groupCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (pairs[i] >>> 32) != (pairs[i - 1] >>> 32)) {
+                groupCount += 1;
             }
         }
 
-        @Override
-        public String toString() {
-            final var builder = new StringBuilder();
+        final var symbols = new int[groupCount];
+        final var kernels = new int[groupCount][];
+        var begin = 0;
+        for (int group = 0; group < groupCount; group++) {
+            final var symbol = pairs[begin] >>> 32;
+            var end = begin;
+            while (end < size && (pairs[end] >>> 32) == symbol) {
+                end += 1;
+            }
 
-            builder.append(production.head());
-            builder.append(" -> ");
+            symbols[group] = (int) symbol;
+            kernels[group] = new int[end - begin];
+            for (int i = begin; i < end; i++) {
+                kernels[group][i - begin] = (int) pairs[i];
+            }
+            begin = end;
+        }
+        return new Successors(symbols, kernels);
+    }
 
-            final var body = production.body();
-            for (int i = 0; i < body.size(); i++) {
-                if (i == dot) {
-                    builder.append(" .");
+    /**
+     * 并行地构造规范项目集族, 结果与 {@link #constructCanonicalLRCollection(int)} 完全相同
+     * <br>
+     * 按 BFS 的层推进: 同一层中各状态的闭包与后继的计算互不相关, 交给 fork-join 线程池并行完成 (由并行流负责任务窃取);
+     * 新的核通过并发的核到状态的映射去重, 先放入的线程负责在下一层展开它. 由于同一层中状态被发现的先后不确定,
+     * 全部构造完成后再从起始状态按与顺序构造相同的 BFS 顺序重新编号.
+     *
+     * @param initItem 起始项目 S -> . S' 的编码
+     */
+    private void constructCanonicalLRCollectionInParallel(int initItem) {
+        // 求闭包用的位集合: 每个任务借用一个, 用完归还 (归还时已经清空). 不使用 ThreadLocal, 构造结束后不会有位集合留在线程池的线程上
+        final var freeMarks = new ConcurrentLinkedQueue<long[]>();
+        final var kernels = new ConcurrentHashMap<Kernel, PendingStatus>();
+        final var init = new PendingStatus(new int[]{initItem});
+        kernels.put(new Kernel(init.kernel), init);
+
+        var frontier = List.of(init);
+        while (!frontier.isEmpty()) {
+            frontier = frontier.parallelStream()
+                .flatMap(status -> {
+                    final var polled = freeMarks.poll();
+                    final var marks = polled != null ? polled : Bits.create(grammar.getItemCount() * width);
+                    final var successors = expand(status, kernels, marks);
+                    freeMarks.offer(marks);
+                    return successors.stream();
+                })
+                .toList();
+        }
+
+        // 重新编号: 依次处理各状态, 按文法符号的顺序为第一次遇到的后继状态编号
+        final var order = new ArrayList<PendingStatus>();
+        init.index = 0;
+        order.add(init);
+        for (int idx = 0; idx < order.size(); idx++) {
+            for (final var target : order.get(idx).targets) {
+                if (target.index < 0) {
+                    target.index = order.size();
+                    order.add(target);
                 }
-                builder.append(" ").append(body.get(i));
             }
+        }
+
+        for (final var status : order) {
+            allStatusInIndexOrder.add(Status.create(status.index));
+            stateItems.add(status.items);
+            transitionSymbols.add(status.symbols);
+            transitionTargets.add(Arrays.stream(status.targets).mapToInt(target -> target.index).toArray());
+        }
+    }
 
-            if (dot == body.size()) {
-                builder.append(" .");
+    /**
+     * 求一个状态的闭包与后继状态
+     *
+     * @param status  待展开的状态
+     * @param kernels 核到状态的映射
+     * @param marks   本任务求闭包用的位集合
+     * @return 本次新发现的状态, 由调用者在下一层展开
+     */
+    private List<PendingStatus> expand(PendingStatus status, Map<Kernel, PendingStatus> kernels, long[] marks) {
+        status.items = constructClosure(status.kernel, marks);
+        final var successors = successorsOf(status.items);
+        status.symbols = successors.symbols();
+        status.targets = new PendingStatus[status.symbols.length];
+
+        final var created = new ArrayList<PendingStatus>();
+        for (int i = 0; i < status.symbols.length; i++) {
+            final var candidate = new PendingStatus(successors.kernels()[i]);
+            final var existing = kernels.putIfAbsent(new Kernel(candidate.kernel), candidate);
+            if (existing == null) {
+                created.add(candidate);
+                status.targets[i] = candidate;
+            } else {
+                status.targets[i] = existing;
             }
+        }
+        return created;
+    }
 
-            return builder.toString();
+    /**
+     * 并行构造中尚未确定编号的状态
+     */
+    private static final class PendingStatus {
+        PendingStatus(int[] kernel) {
+            this.kernel = kernel;
         }
+
+        private final int[] kernel;
+        private int[] items;
+        private int[] symbols;
+        private PendingStatus[] targets;
+        private int index = -1;
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
-    private final List<Status> allStatusInIndexOrder = new ArrayList<>();
+    /**
+     * 以核构造一个新的状态
+     *
+     * @param kernel  新状态的核
+     * @param kernels 核到状态编号的映射
+     * @param marks   求闭包用的位集合
+     * @return 新状态的编号
+     */
+    private int addStatus(int[] kernel, Map<Kernel, Integer> kernels, long[] marks) {
+        final var index = allStatusInIndexOrder.size();
+        allStatusInIndexOrder.add(Status.create(index));
+        stateItems.add(constructClosure(kernel, marks));
+        transitionSymbols.add(null);
+        transitionTargets.add(null);
+        kernels.put(new Kernel(kernel), index);
+        return index;
+    }
 
     /**
-     * 构造出所有状态并维护状态与项集之间的对应关系
+     * @return 状态 state 在文法符号 symbol 上的转移在该状态转移表中的位置; 没有该转移时为负数
      */
-    private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
+    private int findTransition(int state, int symbol) {
+        return Arrays.binarySearch(transitionSymbols.get(state), symbol);
+    }
 
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+    /**
+     * @return GO(state, symbol), 该转移必须存在
+     */
+    private int gotoState(int state, int symbol) {
+        return transitionTargets.get(state)[findTransition(state, symbol)];
+    }
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+    /**
+     * 以 DeRemer–Pennello 算法在 LR(0) 自动机上计算 LALR(1) 向前看符号
+     * <br>
+     * 对自动机中的每个非终结符转移 (p, A), 定义:
+     * <ul>
+     *     <li>DR(p, A): 在状态 GO(p, A) 上可以直接移入的终结符</li>
+     *     <li>(p, A) reads (r, C): r = GO(p, A), C 可以推导出空串且 GO(r, C) 存在</li>
+     *     <li>(p, A) includes (p', B): 存在产生式 B -> beta A gamma, gamma 可以推导出空串, 且从 p' 沿 beta 可到达 p</li>
+     * </ul>
+     * Read 为 DR 沿 reads 的闭包, Follow 为 Read 沿 includes 的闭包, 两者都由 digraph 算法在线性时间内求出.
+     * 最后状态 q 中产生式 A -> omega 的向前看符号, 是所有从 p 沿 omega 可到达 q 的 Follow(p, A) 之并 (lookback 关系).
+     */
+    private void calcLookahead() {
+        final var stateCount = allStatusInIndexOrder.size();
+        final var terminalCount = grammar.getTerminalCount();
+
+        // 为每个非终结符转移编号: 各状态的非终结符转移排在其转移表的前面, 状态 p 的第 i 个转移的编号为 firstTransition[p] + i
+        final var firstTransition = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            var nonTerminalTransitions = 0;
+            for (final var symbol : transitionSymbols.get(state)) {
+                if (!grammar.isTerminal(symbol)) {
+                    nonTerminalTransitions += 1;
+                }
+            }
+            firstTransition[state + 1] = firstTransition[state] + nonTerminalTransitions;
+        }
+        final var count = firstTransition[stateCount];
+        final var transitionFrom = new int[count];
+        final var transitionSymbol = new int[count];
+        for (int state = 0; state < stateCount; state++) {
+            for (int x = firstTransition[state]; x < firstTransition[state + 1]; x++) {
+                transitionFrom[x] = state;
+                transitionSymbol[x] = transitionSymbols.get(state)[x - firstTransition[state]];
+            }
+        }
+
+        // DR 与 reads
+        final var startSymbol = grammar.getBody(0)[0];
+        final var eof = grammar.getTerminalIndex(TokenKind.eof());
+        final var directReads = new long[count][];
+        final var reads = new EdgeList();
+        for (int x = 0; x < count; x++) {
+            final var target = gotoState(transitionFrom[x], transitionSymbol[x]);
+            final var dr = Bits.create(terminalCount);
+            final var targetSymbols = transitionSymbols.get(target);
+            for (int i = 0; i < targetSymbols.length; i++) {
+                final var symbol = targetSymbols[i];
+                if (grammar.isTerminal(symbol)) {
+                    Bits.set(dr, symbol - grammar.getNonTerminalCount());
+                } else if (grammar.isNullable(symbol)) {
+                    reads.add(x, firstTransition[target] + i);
+                }
+            }
+
+            // 起始状态上对 S' 的转移之后便是输入的末尾
+            if (transitionFrom[x] == 0 && transitionSymbol[x] == startSymbol) {
+                Bits.set(dr, eof);
+            }
+            directReads[x] = dr;
+        }
+        final var read = digraph(directReads, reads.toAdjacency(count));
+
+        // includes 与 lookback: 对每个转移 (p', B) 与每条 B -> X1 X2 ... Xn, 从 p' 出发沿产生式体走一遍
+        final var includes = new EdgeList();
+        // lookback 记为 (状态 q, 产生式编号) -> 转移 (p', B)
+        final var lookbackStates = new EdgeList();
+        final var lookbackProductions = new ArrayList<Integer>();
+        for (int y = 0; y < count; y++) {
+            for (final var production : grammar.getProductionsByHead(transitionSymbol[y])) {
+                final var body = grammar.getBody(production);
+                var state = transitionFrom[y];
+                for (int i = 0; i < body.length; i++) {
+                    final var symbol = body[i];
+                    if (!grammar.isTerminal(symbol) && grammar.isSuffixNullable(grammar.getFirstItem(production) + i)) {
+                        includes.add(firstTransition[state] + findTransition(state, symbol), y);
+                    }
+                    state = gotoState(state, symbol);
+                }
+
+                lookbackStates.add(state, y);
+                lookbackProductions.add(production);
+            }
+        }
+        final var follows = digraph(read, includes.toAdjacency(count));
+
+        // 汇总各状态中各产生式的向前看符号
+        for (int state = 0; state < stateCount; state++) {
+            lookaheads.add(new HashMap<>());
+        }
+        for (int i = 0; i < lookbackStates.size; i++) {
+            final var union = lookaheads.get(lookbackStates.from[i])
+                .computeIfAbsent(lookbackProductions.get(i), production -> Bits.create(terminalCount));
+            Bits.or(union, follows[lookbackStates.to[i]]);
         }
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * 以两个 int 数组保存的有向边集合
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private static final class EdgeList {
+        void add(int from, int to) {
+            if (size == this.from.length) {
+                this.from = Arrays.copyOf(this.from, size * 2);
+                this.to = Arrays.copyOf(this.to, size * 2);
+            }
+            this.from[size] = from;
+            this.to[size] = to;
+            size += 1;
+        }
+
+        /**
+         * @param count 顶点数
+         * @return 以起点索引的各点的后继, 同一起点的边保持加入时的顺序
+         */
+        int[][] toAdjacency(int count) {
+            final var degrees = new int[count];
+            for (int i = 0; i < size; i++) {
+                degrees[from[i]] += 1;
+            }
+            final var adjacency = new int[count][];
+            for (int x = 0; x < count; x++) {
+                adjacency[x] = new int[degrees[x]];
+                degrees[x] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                adjacency[from[i]][degrees[from[i]]++] = to[i];
+            }
+            return adjacency;
+        }
+
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int size = 0;
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * DeRemer–Pennello 的 digraph 算法: 求 F(x) = F'(x) ∪ ⋃{F(y) | x R y}
+     * <br>
+     * 以 Tarjan 强连通分量算法的方式遍历关系 R, 同一强连通分量中的元素具有相同的 F, 每条边只处理一次.
+     * 为了能处理很大的文法, 深度优先搜索使用显式的栈而不是递归.
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
-     */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
+     * @param initial  F', 不会被修改
+     * @param relation 关系 R, 以元素编号索引
+     * @return F
+     */
+    private static long[][] digraph(long[][] initial, int[][] relation) {
+        final var count = initial.length;
+        final var result = new long[count][];
+        for (int x = 0; x < count; x++) {
+            result[x] = initial[x].clone();
+        }
+
+        final var depth = new int[count];
+        final var entryDepth = new int[count];
+        final var sccStack = new int[count];
+        var sccTop = 0;
+        // 深度优先搜索的调用栈: 元素与下一条待处理的边
+        final var callNodes = new int[count];
+        final var callEdges = new int[count];
+
+        for (int start = 0; start < count; start++) {
+            if (depth[start] != 0) {
+                continue;
+            }
+
+            var top = 0;
+            callNodes[0] = start;
+            callEdges[0] = 0;
+            sccStack[sccTop++] = start;
+            depth[start] = entryDepth[start] = sccTop;
+
+            while (top >= 0) {
+                final var x = callNodes[top];
+                final var edges = relation[x];
+                if (callEdges[top] < edges.length) {
+                    final var y = edges[callEdges[top]++];
+                    if (depth[y] == 0) {
+                        // 进入 y
+                        top += 1;
+                        callNodes[top] = y;
+                        callEdges[top] = 0;
+                        sccStack[sccTop++] = y;
+                        depth[y] = entryDepth[y] = sccTop;
+                    } else {
+                        depth[x] = Math.min(depth[x], depth[y]);
+                        Bits.or(result[x], result[y]);
+                    }
+                    continue;
+                }
+
+                // x 的所有边都已处理完毕, 若 x 是强连通分量的根则弹出整个分量
+                if (depth[x] == entryDepth[x]) {
+                    while (true) {
+                        final var member = sccStack[--sccTop];
+                        depth[member] = Integer.MAX_VALUE;
+                        if (member == x) {
+                            break;
+                        }
+                        result[member] = result[x];
+                    }
+                }
+
+                // 返回调用者
+                top -= 1;
+                if (top >= 0) {
+                    final var parent = callNodes[top];
+                    depth[parent] = Math.min(depth[parent], depth[x]);
+                    Bits.or(result[parent], result[x]);
+                }
+            }
         }
 
         return result;
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
+     * 分析表中的一处冲突
      *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
-     */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
-
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+     * @param state    冲突所在的状态
+     * @param terminal 冲突的终结符
+     * @param kind     冲突的类型
+     * @param items    参与冲突的项目
+     * @param chosen   最终填入分析表的动作; 被 %nonassoc 消除时为错误动作
+     * @param resolved 是否由优先级与结合性声明解决; 未解决的冲突按 yacc 的惯例取移入或靠前的产生式
+     */
+    public record Conflict(int state, TokenKind terminal, Kind kind, List<String> items, Action chosen, boolean resolved) {
+        public enum Kind {SHIFT_REDUCE, REDUCE_REDUCE}
     }
 
     /**
-     * 构造 LR(0) 规范项目集族
-     *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
-     */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
-
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
-                }
+     * @return 上一次 {@link #run()} 中遇到的所有冲突, 包括由优先级声明解决的
+     */
+    public List<Conflict> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * 将冲突报告打印到文件之中, 列出每个冲突的状态, 终结符, 参与冲突的项目与最终采用的动作
+     */
+    public void dumpConflicts() {
+        final var unresolved = conflicts.stream().filter(conflict -> !conflict.resolved()).count();
+        final var lines = new ArrayList<String>();
+        lines.add("%d conflicts, %d resolved by precedence, %d unresolved".formatted(
+            conflicts.size(), conflicts.size() - unresolved, unresolved));
+        for (final var conflict : conflicts) {
+            final var chosen = conflict.chosen().getKind() == Action.ActionKind.Error ? "error" : conflict.chosen();
+            lines.add("state %d on %s: %s, %s %s".formatted(
+                conflict.state(), conflict.terminal(), conflict.kind(),
+                conflict.resolved() ? "resolved as" : "unresolved, using", chosen));
+            for (final var item : conflict.items()) {
+                lines.add("    " + item);
             }
         }
 
-        return new ArrayList<>(result);
+        FileUtils.writeLines(FilePathConfig.CONFLICT_REPORT_PATH, lines);
     }
 
+    private final List<Conflict> conflicts = new ArrayList<>();
+
     /**
      * 构造 LR 分析表 (填充各个 status 中的 action 与 goto)
+     * <br>
+     * 每个状态先收集各终结符上的移入与规约动作, 遇到冲突时以优先级与结合性声明解决, 无法解决的则记入冲突报告,
+     * 因此 {@link Status#setAction} 不会再因为冲突而抛出异常.
      */
     private void genTable() {
-        // 依索引顺序对每个状态的每个项目
+        final var terminalCount = grammar.getTerminalCount();
+        final var nonTerminalCount = grammar.getNonTerminalCount();
+        final var eof = grammar.getTerminalIndex(TokenKind.eof());
+        // 规约动作只与产生式有关, 各状态共用
+        final var reduceActions = new Action[grammar.getProductionCount()];
+        for (int production = 0; production < reduceActions.length; production++) {
+            reduceActions[production] = Action.reduce(grammar.getProduction(production));
+        }
+
+        // 依索引顺序对每个状态
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
-                final var afterDotOpt = item.getAfterDot();
-
-                // 根据项目的点的位置和点后面跟着的文法符号进行分类
-                if (afterDotOpt.isEmpty()) {
-                    final var argumentProduction = productions.get(0);
-                    if (item.production().equals(argumentProduction)) {
-                        // S -> S' .
-                        // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
-                        status.setAction(TokenKind.eof(), Action.accept());
-                    } else {
-                        // A -> alpha .
-                        // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
-                        final var production = item.production();
-                        final var head = production.head();
-                        for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
-                        }
+            final var state = status.index();
+
+            // A -> alpha . a beta 与 A -> alpha . B beta: 移入终结符, 或转移到 B 解析之后的状态 (即 GO(I, B) 对应的状态)
+            final var shifts = new Status[terminalCount];
+            final var symbols = transitionSymbols.get(state);
+            for (int i = 0; i < symbols.length; i++) {
+                final var next = allStatusInIndexOrder.get(transitionTargets.get(state)[i]);
+                if (grammar.isTerminal(symbols[i])) {
+                    shifts[symbols[i] - nonTerminalCount] = next;
+                } else {
+                    status.setGoto(grammar.getNonTerminal(symbols[i]), next);
+                }
+            }
+
+            // A -> alpha .: 对于任何位于其向前看集合内的终结符都应该规约 A; S -> S' .: 遇到 EOF 就 accept 了
+            final var reduces = new int[terminalCount];
+            Arrays.fill(reduces, -1);
+            final var reduceConflicts = Bits.create(terminalCount);
+            var accept = false;
+            for (final var code : stateItems.get(state)) {
+                final var item = code / width;
+                if (grammar.getSymbolAfterDot(item) >= 0) {
+                    continue;
+                }
+
+                final var production = grammar.getItemProduction(item);
+                if (production == 0) {
+                    accept = true;
+                    continue;
+                }
+                Bits.forEach(getReduceLookaheads(state, code), terminal -> {
+                    if (reduces[terminal] < 0) {
+                        reduces[terminal] = production;
+                    } else if (reduces[terminal] != production) {
+                        // 规约-规约冲突: 取文法中靠前的产生式
+                        Bits.set(reduceConflicts, terminal);
+                        reduces[terminal] = Math.min(reduces[terminal], production);
                     }
+                });
+            }
 
-                } else {
-                    final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
-
-                    if (symbol instanceof TokenKind tokenKind) {
-                        // A -> alpha . a beta
-                        // 如果项目代表某个产生式的中间, 并且接着一个终结符的情况, 我们就移入该终结符
-                        status.setAction(tokenKind, Action.shift(next));
-                    } else if (symbol instanceof NonTerminal nonTerminal) {
-                        // A -> alpha . B beta
-                        // 如果项目代表某个产生式的中间, 并且接着一个非终结符的情况,
-                        // 我们就转移到 B 解析之后的状态中去 (即 GO(I, B) 对应的状态)
-                        status.setGoto(nonTerminal, next);
-                    } else {
-                        throw new RuntimeException("Unknown type of Term");
+            for (int terminal = 0; terminal < terminalCount; terminal++) {
+                final var tokenKind = grammar.getTerminal(terminal);
+                if (accept && terminal == eof) {
+                    if (reduces[terminal] >= 0) {
+                        recordConflict(state, terminal, Conflict.Kind.REDUCE_REDUCE, Action.accept(), false);
                     }
+                    status.setAction(tokenKind, Action.accept());
+                    continue;
                 }
+
+                final var reduce = reduces[terminal] < 0 ? null : reduceActions[reduces[terminal]];
+                if (Bits.get(reduceConflicts, terminal)) {
+                    recordConflict(state, terminal, Conflict.Kind.REDUCE_REDUCE, reduce, false);
+                }
+
+                final Action action;
+                if (shifts[terminal] != null && reduce != null) {
+                    action = resolveShiftReduce(state, terminal, shifts[terminal], reduce);
+                } else if (shifts[terminal] != null) {
+                    action = Action.shift(shifts[terminal]);
+                } else {
+                    action = reduce;
+                }
+
+                if (action != null && action.getKind() != Action.ActionKind.Error) {
+                    status.setAction(tokenKind, action);
+                }
+            }
+        }
+    }
+
+    /**
+     * 以优先级与结合性解决移入-规约冲突
+     * <br>
+     * 产生式与终结符都声明了优先级时: 产生式优先级高则规约, 终结符优先级高则移入;
+     * 优先级相同时左结合规约, 右结合移入, 不结合则该格子为错误. 否则冲突无法解决, 取移入.
+     *
+     * @return 填入分析表的动作
+     */
+    private Action resolveShiftReduce(int state, int terminal, Status shiftTarget, Action reduce) {
+        final var shift = Action.shift(shiftTarget);
+        final var tokenPrecedence = GrammarInfo.getPrecedence(grammar.getTerminal(terminal));
+        final var productionPrecedence = GrammarInfo.getPrecedence(reduce.getProduction());
+        if (tokenPrecedence.isEmpty() || productionPrecedence.isEmpty()) {
+            recordConflict(state, terminal, Conflict.Kind.SHIFT_REDUCE, shift, false);
+            return shift;
+        }
+
+        final var tokenLevel = tokenPrecedence.get().level();
+        final var productionLevel = productionPrecedence.get().level();
+        final Action action;
+        if (productionLevel != tokenLevel) {
+            action = productionLevel > tokenLevel ? reduce : shift;
+        } else {
+            action = switch (tokenPrecedence.get().associativity()) {
+                case LEFT -> reduce;
+                case RIGHT -> shift;
+                case NONASSOC -> Action.error();
+            };
+        }
+        recordConflict(state, terminal, Conflict.Kind.SHIFT_REDUCE, action, true);
+        return action;
+    }
+
+    private void recordConflict(int state, int terminal, Conflict.Kind kind, Action chosen, boolean resolved) {
+        // 参与冲突的项目: 点后面是该终结符的项目, 与向前看集合中包含该终结符的完整项目
+        final var symbol = grammar.getNonTerminalCount() + terminal;
+        final var eof = grammar.getTerminalIndex(TokenKind.eof());
+        final var items = new ArrayList<String>();
+        for (final var code : stateItems.get(state)) {
+            final var item = code / width;
+            final var afterDot = grammar.getSymbolAfterDot(item);
+            final boolean involved;
+            if (afterDot >= 0) {
+                involved = afterDot == symbol;
+            } else if (grammar.getItemProduction(item) == 0) {
+                involved = terminal == eof;
+            } else {
+                involved = Bits.get(getReduceLookaheads(state, code), terminal);
+            }
+
+            if (involved) {
+                items.add(describeItem(code));
             }
         }
+        conflicts.add(new Conflict(state, grammar.getTerminal(terminal), kind, items, chosen, resolved));
     }
 
-    // 我们在 Status.setAction/setGoto 中检查规约-规约冲突与移入-规约冲突
-    // 如果有冲突, 它们会抛出 RuntimeException
+    /**
+     * @param state 项目所在的状态
+     * @param code  点在末尾的项目 A -> alpha . 的编码
+     * @return 应当规约该项目的向前看符号
+     */
+    private long[] getReduceLookaheads(int state, int code) {
+        final var production = grammar.getItemProduction(code / width);
+        return switch (algorithm) {
+            // SLR(1): follow(A)
+            case SLR -> grammar.getFollow(grammar.getHead(production));
+            // LALR(1): 由 DeRemer–Pennello 算法求出的向前看集合
+            case LALR -> lookaheads.get(state).getOrDefault(production, Bits.create(grammar.getTerminalCount()));
+            // LR(1): 项目自身的向前看符号
+            case LR1 -> {
+                final var lookahead = Bits.create(grammar.getTerminalCount());
+                Bits.set(lookahead, code % width);
+                yield lookahead;
+            }
+        };
+    }
 }
@@ -0,0 +1,128 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.util.Arrays;
+
+/**
+ * 标识符驻留表
+ * <br>
+ * 为每个不同的标识符分配一个从 0 开始的稠密整数编号. 查找直接在字符序列的某个区间上进行 (开放定址的哈希表, 比较时逐字符比较),
+ * 因此重复出现的标识符不需要先构造 String 对象; 只有第一次出现的标识符才会构造 String 保存下来.
+ * <br>
+ * 此类不是线程安全的.
+ */
+public class IdentifierTable {
+    /**
+     * 查找或加入标识符
+     *
+     * @param text  包含标识符的字符序列
+     * @param start 标识符的起始下标
+     * @param end   标识符的结束下标 (不包括)
+     * @return 标识符的编号
+     */
+    public int intern(CharSequence text, int start, int end) {
+        final var hash = hash(text, start, end);
+        var slot = hash & (slots.length - 1);
+        while (slots[slot] != EMPTY) {
+            final var id = slots[slot];
+            if (hashes[id] == hash && matches(names[id], text, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        final var id = size;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        names[id] = text.subSequence(start, end).toString();
+        hashes[id] = hash;
+        slots[slot] = id;
+        size += 1;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @param name 标识符
+     * @return 标识符的编号
+     */
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * @param id 标识符的编号
+     * @return 标识符
+     */
+    public String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new RuntimeException("Unknown identifier id: " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * @return 表中标识符的数量, 也即下一个分配出的编号
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        // 与 String.hashCode 相同的多项式哈希, 再打散高位
+        var hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        for (int id = 0; id < size; id++) {
+            var slot = hashes[id] & (slots.length - 1);
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * 哈希表的槽, 存放标识符的编号, 大小恒为 2 的幂
+     */
+    private int[] slots = newSlots();
+
+    /**
+     * 以编号索引的标识符及其哈希值
+     */
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private static int[] newSlots() {
+        final var slots = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+}
@@ -3,6 +3,7 @@ package cn.edu.hitsz.compiler.symtab;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 符号表
@@ -10,8 +11,119 @@ import java.util.*;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 每次编译都应当使用自己的符号表实例. 符号表可以拥有一个外层作用域 (比如所有编译共享的全局/内建符号), 查找时先查本表再查外层,
+ * 新增条目时则只加入本表. 被多个线程共享的外层作用域应使用 {@link #concurrent()} 构造.
+ * <br>
+ * 非并发的符号表按条目加入的顺序保存条目.
+ * <br>
+ * 词法分析时, 标识符通过 {@link #intern(CharSequence, int, int)} 驻留并获得一个稠密的整数编号, 此后的各个阶段都可以用该编号
+ * 直接以数组下标的方式访问条目, 不必再对标识符文本做哈希. 编号只在本表内有效, 并发的符号表不支持驻留.
+ * 驻留的标识符总是在本表中拥有自己的条目, 外层作用域的条目对本次编译是只读的.
  */
 public class SymbolTable {
+    /**
+     * 构造一个独立的符号表
+     */
+    public SymbolTable() {
+        this(new LinkedHashMap<>(), null, new IdentifierTable());
+    }
+
+    /**
+     * 构造一个以 {@code enclosing} 为外层作用域的符号表
+     *
+     * @param enclosing 外层作用域, 通常为多个编译共享的全局/内建符号表
+     */
+    public SymbolTable(SymbolTable enclosing) {
+        this(new LinkedHashMap<>(), enclosing, new IdentifierTable());
+    }
+
+    /**
+     * 构造一个可被多个线程同时读写的符号表, 适合作为多个编译共享的外层作用域
+     *
+     * @return 线程安全的符号表
+     */
+    public static SymbolTable concurrent() {
+        return new SymbolTable(new ConcurrentHashMap<>(), null, null);
+    }
+
+    private SymbolTable(Map<String, SymbolTableEntry> table, SymbolTable enclosing, IdentifierTable identifiers) {
+        this.table = table;
+        this.enclosing = enclosing;
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * 驻留标识符: 获得其编号, 若该标识符第一次出现则同时为其在本表中新增条目.
+     * 外层作用域中已有该符号时, 新条目继承外层条目的类型, 但之后对条目的修改只作用于本表, 不影响共享外层作用域的其它编译;
+     * 因此重复声明外层作用域中已有类型的符号会在 {@link SymbolTableEntry#setType(SourceCodeType)} 时报错, 与 {@link #add(String)} 一致
+     *
+     * @param text  包含标识符的字符序列
+     * @param start 标识符的起始下标
+     * @param end   标识符的结束下标 (不包括)
+     * @return 标识符的编号
+     */
+    public int intern(CharSequence text, int start, int end) {
+        if (identifiers == null) {
+            throw new RuntimeException("Concurrent symbol table does not support interning");
+        }
+
+        final var id = identifiers.intern(text, start, end);
+        if (id == entriesById.size()) {
+            // 第一次出现的标识符
+            final var name = identifiers.getName(id);
+            var entry = table.get(name);
+            if (entry == null) {
+                entry = new SymbolTableEntry(name);
+                final var shared = enclosing != null ? enclosing.lookup(name) : null;
+                if (shared != null && shared.getType() != null) {
+                    entry.setType(shared.getType());
+                }
+                table.put(name, entry);
+            }
+            entriesById.add(entry);
+        }
+        return id;
+    }
+
+    /**
+     * @param text 标识符
+     * @return 标识符的编号
+     * @see #intern(CharSequence, int, int)
+     */
+    public int intern(String text) {
+        return intern(text, 0, text.length());
+    }
+
+    /**
+     * 以编号获取条目
+     *
+     * @param id 由 {@link #intern(CharSequence, int, int)} 获得的编号
+     * @return 该符号在符号表中的条目
+     * @throws RuntimeException 该编号不存在
+     */
+    public SymbolTableEntry get(int id) {
+        if (!has(id)) {
+            throw new RuntimeException("This symbol does not exist in the table!");
+        }
+        return entriesById.get(id);
+    }
+
+    /**
+     * @param id 由 {@link #intern(CharSequence, int, int)} 获得的编号
+     * @return 该编号对应的标识符
+     */
+    public String getName(int id) {
+        return get(id).getText();
+    }
+
+    /**
+     * @param id 编号
+     * @return 该编号是否由本表分配
+     */
+    public boolean has(int id) {
+        return id >= 0 && id < entriesById.size();
+    }
 
     /**
      * 获取符号表中已有的条目
@@ -23,11 +135,11 @@ public class SymbolTable {
     public SymbolTableEntry get(String text) {
         // TODO
         // throw new NotImplementedException();
-        if (!has(text)) {
+        final var entry = lookup(text);
+        if (entry == null) {
             throw new RuntimeException("This symbol does not exist in the table!");
-        } else {
-            return SYMBOL_TABLE.get(text);
         }
+        return entry;
     }
 
     /**
@@ -40,13 +152,15 @@ public class SymbolTable {
     public SymbolTableEntry add(String text) {
         // TODO
         // throw new NotImplementedException();
-        if (has(text)) {
+        if (enclosing != null && enclosing.has(text)) {
+            throw new RuntimeException("This symbol already exists in the table!");
+        }
+        // 用 putIfAbsent 保证对并发符号表的 "检查-插入" 是原子的
+        final var symbolTableEntry = new SymbolTableEntry(text);
+        if (table.putIfAbsent(text, symbolTableEntry) != null) {
             throw new RuntimeException("This symbol already exists in the table!");
-        } else {
-            SymbolTableEntry symbolTableEntry = new SymbolTableEntry(text);
-            SYMBOL_TABLE.put(text, symbolTableEntry);
-            return symbolTableEntry;
         }
+        return symbolTableEntry;
     }
 
     /**
@@ -58,18 +172,51 @@ public class SymbolTable {
     public boolean has(String text) {
         // TODO
         // throw new NotImplementedException();
-        return SYMBOL_TABLE.containsKey(text);
+        return lookup(text) != null;
+    }
+
+    /**
+     * 按 {@code other} 中标识符驻留的顺序, 将其驻留到本表中
+     *
+     * @param other 另一个符号表
+     * @return 编号映射: 下标为标识符在 {@code other} 中的编号, 值为其在本表中的编号
+     */
+    public int[] mergeFrom(SymbolTable other) {
+        final var mapping = new int[other.entriesById.size()];
+        for (int id = 0; id < mapping.length; id++) {
+            final var entry = other.entriesById.get(id);
+            mapping[id] = intern(entry.getText());
+            final var merged = get(mapping[id]);
+            if (entry.getType() != null && merged.getType() == null) {
+                merged.setType(entry.getType());
+            }
+        }
+        return mapping;
     }
 
     /**
-     * 获得符号表的所有条目以供 {@code dumpTable} 使用
+     * 依次在本表与外层作用域中查找条目
+     *
+     * @param text 符号的文本表示
+     * @return 找到的条目, 若不存在则返回 null
+     */
+    private SymbolTableEntry lookup(String text) {
+        final var entry = table.get(text);
+        if (entry == null && enclosing != null) {
+            return enclosing.lookup(text);
+        }
+        return entry;
+    }
+
+    /**
+     * 获得符号表的所有条目以供 {@code dumpTable} 使用, 不包括外层作用域中的条目
      *
      * @return 符号表的所有条目
      */
     private Map<String, SymbolTableEntry> getAllEntries() {
         // TODO
         // throw new NotImplementedException();
-        return Collections.unmodifiableMap(SYMBOL_TABLE);
+        return Collections.unmodifiableMap(table);
     }
 
     /**
@@ -90,7 +237,39 @@ public class SymbolTable {
         FileUtils.writeLines(path, lines);
     }
 
-    private static final Map<String, SymbolTableEntry> SYMBOL_TABLE = new HashMap<>();
+    /**
+     * 按 {@link #dumpTable(String)} 的格式输出本作用域的条目, 但类型一律输出为 null, 即词法分析结束, 语义分析开始之前的符号表.
+     * 流式分析时词法分析与语义分析交替进行, 此时用它代替在词法分析之后调用 {@code dumpTable}
+     *
+     * @param path 输出文件路径
+     */
+    public void dumpNames(String path) {
+        final var lines = getAllEntries().keySet().stream()
+            .sorted()
+            .map("(%s, null)"::formatted)
+            .toList();
+        FileUtils.writeLines(path, lines);
+    }
+
+    /**
+     * 本作用域的条目
+     */
+    private final Map<String, SymbolTableEntry> table;
+
+    /**
+     * 标识符驻留表, 对并发符号表为 null
+     */
+    private final IdentifierTable identifiers;
+
+    /**
+     * 以标识符编号索引的条目, 可能是外层作用域中的条目
+     */
+    private final List<SymbolTableEntry> entriesById = new ArrayList<>();
+
+    /**
+     * 外层作用域, 可能为 null
+     */
+    private final SymbolTable enclosing;
 
 }
 
@@ -42,6 +42,11 @@ public final class FilePathConfig {
      */
     public static final String PARSER_PATH = "data/out/parser_list.txt";
 
+    /**
+     * 二进制的移入/规约事件日志, 可以不经词法与语法分析直接重放给观察者
+     */
+    public static final String PARSE_EVENT_LOG_PATH = "data/out/parse_events.bin";
+
     /**
      * 语义分析后的符号表
      */
@@ -62,6 +67,36 @@ public final class FilePathConfig {
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * 预编译的二进制 LR 分析表, 输入文件不变时下次运行直接加载
+     */
+    public static final String LR1_TABLE_BINARY_PATH = "data/out/LR1_table.bin";
+
+    /**
+     * 由 grammar.txt 生成的 LR 分析表的缓存, 文法与码点文件不变时不再重新生成
+     */
+    public static final String GENERATED_TABLE_CACHE_PATH = "data/out/generated_table.bin";
+
+    /**
+     * 每次重新生成分析表时各阶段的耗时记录
+     */
+    public static final String TABLE_GENERATION_TIMING_PATH = "data/out/table_generation_timing.txt";
+
+    /**
+     * LR 分析表压缩前后的大小对比
+     */
+    public static final String TABLE_STATISTICS_PATH = "data/out/table_statistics.txt";
+
+    /**
+     * 由 grammar.txt 生成 LR 分析表时的冲突报告
+     */
+    public static final String CONFLICT_REPORT_PATH = "data/out/conflicts.txt";
+
+    /**
+     * 由 grammar.txt 生成 LR 分析表时的项目集族, 用于调试
+     */
+    public static final String ITEMS_PATH = "data/out/items.txt";
+
     private FilePathConfig() {
     }
 }
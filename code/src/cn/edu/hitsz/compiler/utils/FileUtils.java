@@ -1,12 +1,20 @@
 package cn.edu.hitsz.compiler.utils;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 用于方便地做文件读写的工具
@@ -36,6 +44,148 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 以流的形式打开文本文件, 调用者负责关闭返回的 Reader
+     *
+     * @param path 文本文件路径
+     * @return 文件的字符流
+     */
+    public static Reader openReader(String path) {
+        try {
+            return Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以流的形式打开文本文件用于写入, 已存在时被覆盖, 调用者负责关闭返回的 Writer
+     *
+     * @param path 文本文件路径
+     * @return 带缓冲的字符流
+     */
+    public static Writer openWriter(String path) {
+        try {
+            return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以只读方式将文件映射到内存. 映射在返回的缓冲区被回收前一直有效, 文件通道在映射完成后即可关闭
+     *
+     * @param path 文件路径
+     * @return 文件内容的只读映射
+     */
+    public static MappedByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("File too large to map: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 读取文件开头的至多 length 个字节, 用于在映射或完整读入之前检查文件头
+     *
+     * @param path   文件路径
+     * @param length 要读取的字节数
+     * @return 读出的内容, 已翻转为可读状态; 文件不足 length 字节时只含实际读到的部分
+     */
+    public static ByteBuffer readPrefix(String path, int length) {
+        final var buffer = ByteBuffer.allocate(length);
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读到文件尾或读满为止
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 以写方式打开文件通道, 文件已存在时清空其内容. 调用者负责关闭返回的通道
+     *
+     * @param path 文件路径
+     * @return 文件通道
+     */
+    public static FileChannel openForWrite(String path) {
+        try {
+            return FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 读取文件的全部字节
+     *
+     * @param path 文件路径
+     * @return 文件内容
+     */
+    public static byte[] readBytes(String path) {
+        try {
+            return Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 将字节写入指定文件. 先写入同目录下的临时文件再替换目标文件, 读者不会看到写了一半的文件
+     *
+     * @param path    要写入的文件路径
+     * @param content 要写入的内容
+     */
+    public static void writeBytes(String path, byte[] content) {
+        final var target = Paths.get(path);
+        final var temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    /**
+     * @param path 文件路径
+     * @return 文件是否存在
+     */
+    public static boolean exists(String path) {
+        return Files.isRegularFile(Paths.get(path));
+    }
+
+    /**
+     * @param path 文件路径
+     * @return 文件的字节数
+     */
+    public static long size(String path) {
+        try {
+            return Files.size(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * @param path 文件路径
+     * @return 文件的最后修改时间, 以纳秒计, 实际精度取决于文件系统
+     */
+    public static long lastModified(String path) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(path)).to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
     /**
      * 将内容写入指定文件
      *
@@ -54,6 +204,21 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 将若干行追加到指定文件末尾, 文件不存在时创建
+     *
+     * @param path  要写入的文件路径
+     * @param lines 要追加的行
+     */
+    public static void appendLines(String path, List<String> lines) {
+        try {
+            Files.write(Paths.get(path), lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
     /**
      * 创建空文件
      *